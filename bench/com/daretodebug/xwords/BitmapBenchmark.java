@@ -0,0 +1,180 @@
+package com.daretodebug.xwords;
+
+import java.io.*;
+import java.util.*;
+
+// Compares the dictionary's letter/position tables with the java.util.BitSet tables they
+// replaced: the memory every table takes, and how long it takes to copy one table of a word
+// length and AND and OR two others into it. Run with the path of a word list, ideally of
+// 250,000 words or more, and optionally the word length to time
+final class BitmapBenchmark {
+	
+	private static final int ROUNDS = 10;
+	private static final int WARMUP_ROUNDS = 3;
+	private static final int PASSES = 200;
+	
+	// A BitSet's own fields and its array's header, on top of the longs
+	private static final long BIT_SET_OVERHEAD = 24 + 16;
+	
+	private static long sink;
+	
+	public static void main(String[] args) throws IOException {
+		
+		if(args.length < 1) {
+			
+			System.err.println("Usage: BitmapBenchmark <word list> [word length]");
+			System.exit(1);
+			
+		}
+		
+		WordDictionary dictionary = Program.readWordList(new File(args[0]));
+		int wordLength = (args.length > 1) ? Integer.parseInt(args[1]) : 7;
+		
+		System.out.println(dictionary.getWordCount() + " words, " + dictionary.getTableCount() + " word lengths");
+		System.out.println();
+		
+		printMemory(dictionary);
+		System.out.println();
+		
+		printSpeed(dictionary, wordLength - 2);
+		
+		if(sink == 42) System.out.println();
+		
+	}
+	
+	private static void printMemory(WordDictionary dictionary) {
+		
+		long chosenSize = 0;
+		long denseSize = 0;
+		long smallestSize = 0;
+		long bitSetSize = 0;
+		int tableCount = 0;
+		int compactCount = 0;
+		
+		for(int tableIndex = 0; tableIndex < dictionary.getTableCount(); ++tableIndex) {
+			
+			int size = dictionary.getWordTable(tableIndex).length;
+			long[] words = new long[WordBitmap.getLongCount(size)];
+			
+			for(char letter = 'A'; letter <= 'Z'; ++letter)
+				for(int position = 0; position < tableIndex + 2; ++position) {
+					
+					WordBitmap table = dictionary.getPositionTable(tableIndex, letter, position);
+					table.copyInto(words);
+					
+					chosenSize += table.getSizeInBytes();
+					denseSize += DenseWordBitmap.getDenseSize(size);
+					smallestSize += Math.min(DenseWordBitmap.getDenseSize(size), CompactWordBitmap.getCompactSize(words, size));
+					bitSetSize += BIT_SET_OVERHEAD + WordBitmap.getLongCount(size) * 8L;
+					
+					++tableCount;
+					if(table instanceof CompactWordBitmap) ++compactCount;
+					
+				}
+			
+		}
+		
+		System.out.println("Memory of " + tableCount + " letter/position tables");
+		System.out.println("  BitSet                 " + formatMegabytes(bitSetSize));
+		System.out.println("  dense                  " + formatMegabytes(denseSize));
+		System.out.println("  as chosen              " + formatMegabytes(chosenSize) + " (" + compactCount + " compact)");
+		System.out.println("  smallest of each       " + formatMegabytes(smallestSize));
+		
+	}
+	
+	private static void printSpeed(WordDictionary dictionary, int tableIndex) {
+		
+		int wordLength = tableIndex + 2;
+		int size = dictionary.getWordTable(tableIndex).length;
+		
+		WordBitmap[] chosen = new WordBitmap[26 * wordLength];
+		WordBitmap[] dense = new WordBitmap[chosen.length];
+		BitSet[] bitSets = new BitSet[chosen.length];
+		
+		for(char letter = 'A'; letter <= 'Z'; ++letter)
+			for(int position = 0; position < wordLength; ++position) {
+				
+				int i = (letter - 'A') * wordLength + position;
+				
+				chosen[i] = dictionary.getPositionTable(tableIndex, letter, position);
+				
+				long[] words = new long[WordBitmap.getLongCount(size)];
+				chosen[i].copyInto(words);
+				dense[i] = new DenseWordBitmap(words, size);
+				
+				// Made the way the dictionary used to make them
+				bitSets[i] = new BitSet(size);
+				for(int bit = chosen[i].nextSetBit(0); bit >= 0; bit = chosen[i].nextSetBit(bit + 1))
+					bitSets[i].set(bit);
+				
+			}
+		
+		System.out.println("Copy, AND and OR of " + wordLength + "-letter tables (" + size + " words), ns per operation");
+		System.out.println("  round      BitSet       dense   as chosen");
+		
+		for(int round = 0; round < ROUNDS; ++round) {
+			
+			double bitSetTime = timeBitSets(bitSets);
+			double denseTime = timeWordBitmaps(dense, size);
+			double chosenTime = timeWordBitmaps(chosen, size);
+			
+			System.out.printf("  %5s  %10.0f  %10.0f  %10.0f%n", (round < WARMUP_ROUNDS) ? "warm" : String.valueOf(round - WARMUP_ROUNDS + 1), bitSetTime, denseTime, chosenTime);
+			
+		}
+		
+	}
+	
+	// Operands are spread over the tables the same way for every kind of table
+	private static int getOperand(int i, int step, int count) {
+		return (int) (((long) i * step + 1) % count);
+	}
+	
+	private static double timeBitSets(BitSet[] tables) {
+		
+		long start = System.nanoTime();
+		long count = 0;
+		
+		for(int pass = 0; pass < PASSES; ++pass)
+			for(int i = 0; i < tables.length; ++i) {
+				
+				BitSet result = (BitSet) tables[i].clone();
+				result.and(tables[getOperand(i, 7, tables.length)]);
+				result.or(tables[getOperand(i, 13, tables.length)]);
+				
+				count += result.cardinality();
+				
+			}
+		
+		sink += count;
+		return (double) (System.nanoTime() - start) / PASSES / tables.length;
+		
+	}
+	
+	private static double timeWordBitmaps(WordBitmap[] tables, int size) {
+		
+		long start = System.nanoTime();
+		long count = 0;
+		
+		for(int pass = 0; pass < PASSES; ++pass)
+			for(int i = 0; i < tables.length; ++i) {
+				
+				long[] result = new long[WordBitmap.getLongCount(size)];
+				tables[i].copyInto(result);
+				tables[getOperand(i, 7, tables.length)].andInto(result);
+				tables[getOperand(i, 13, tables.length)].orInto(result);
+				
+				for(long word : result)
+					count += Long.bitCount(word);
+				
+			}
+		
+		sink += count;
+		return (double) (System.nanoTime() - start) / PASSES / tables.length;
+		
+	}
+	
+	private static String formatMegabytes(long bytes) {
+		return String.format("%8.2f MB", bytes / (1024.0 * 1024.0));
+	}
+	
+}
@@ -0,0 +1,203 @@
+package com.daretodebug.xwords;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.daretodebug.xwords.BoardModel.*;
+
+// Times finding every slot on a board, and compares the InternTable the slots are interned in
+// with the java.util.Hashtable pools it replaced by running both through the same work: each
+// board's slots are put in, looked up again through equal slots found separately, and taken
+// out. The boards come from a game played with the best move each turn, drawn from a seeded
+// bag. Run with the path of a word list
+final class SlotBenchmark {
+	
+	private static final String BAG = "AAAAAAAAABBCCDDDDEEEEEEEEEEEEFFGGGHHIIIIIIIIIJKLLLLMMNNNNNNOOOOOOOOPPQRRRRRRSSSSTTTTTTUUUUVVWWXYYZ**";
+	private static final int TURNS = 20;
+	private static final int ROUNDS = 10;
+	private static final int WARMUP_ROUNDS = 3;
+	private static final int ENUMERATIONS = 200;
+	private static final int PASSES = 50;
+	
+	private static long sink;
+	
+	public static void main(String[] args) throws IOException {
+		
+		if(args.length < 1) {
+			
+			System.err.println("Usage: SlotBenchmark <word list>");
+			System.exit(1);
+			
+		}
+		
+		WordDictionary dictionary = Program.readWordList(new File(args[0]));
+		List<BoardSnapshot> boards = playGame(dictionary);
+		BoardSnapshot lastBoard = boards.get(boards.size() - 1);
+		
+		// Every board's slots, found twice so lookups go through equal but separate slots
+		ArrayList<Object[]> putSlots = new ArrayList<Object[]>();
+		ArrayList<Object[]> lookupSlots = new ArrayList<Object[]>();
+		int slotCount = 0;
+		
+		for(BoardSnapshot board : boards) {
+			
+			putSlots.add(getSlots(board));
+			lookupSlots.add(getSlots(board));
+			slotCount += putSlots.get(putSlots.size() - 1).length;
+			
+		}
+		
+		System.out.println(boards.size() + " boards, " + new BoardSlots(lastBoard).getSlots().size() + " complex slots on the last");
+		System.out.println();
+		
+		System.out.println("Interning " + slotCount + " simple and complex slots, ns per slot put, looked up and removed");
+		System.out.println("  round   Hashtable  InternTable   full enumeration of the last board, ms");
+		
+		for(int round = 0; round < ROUNDS; ++round) {
+			
+			double hashtableTime = timeHashtables(putSlots, lookupSlots, slotCount);
+			double internTableTime = timeInternTables(putSlots, lookupSlots, slotCount);
+			double enumerationTime = timeEnumeration(lastBoard);
+			
+			System.out.printf("  %5s  %10.1f  %11.1f  %10.3f%n", (round < WARMUP_ROUNDS) ? "warm" : String.valueOf(round - WARMUP_ROUNDS + 1), hashtableTime, internTableTime, enumerationTime);
+			
+		}
+		
+		if(sink == 42) System.out.println();
+		
+	}
+	
+	private static List<BoardSnapshot> playGame(WordDictionary dictionary) {
+		
+		Random random = new Random(21);
+		MoveGenerator generator = new MoveGenerator();
+		
+		ArrayList<BoardSnapshot> boards = new ArrayList<BoardSnapshot>();
+		Tile[][] columns = new Tile[15][15];
+		
+		for(int turn = 0; turn < TURNS; ++turn) {
+			
+			BoardSnapshot board = DefaultBoard.createSnapshot(columns);
+			boards.add(board);
+			
+			LetterIntMap letterCounts = new LetterIntMap();
+			int blankCount = 0;
+			
+			for(int i = 0; i < 7; ++i) {
+				
+				char ch = BAG.charAt(random.nextInt(BAG.length()));
+				
+				if(ch == '*') ++blankCount;
+				else letterCounts.increment(ch);
+				
+			}
+			
+			MoveList moves = generator.search(board, new Hand(letterCounts, blankCount), dictionary, 1, 1, TimeUnit.DAYS);
+			if(moves.isEmpty()) continue;
+			
+			Move move = moves.get(0);
+			UnpositionedMove unpos = move.getUnpositionedMove();
+			Position pos = move.getPosition();
+			
+			for(int i = 0; i < unpos.getLength(); ++i) {
+				
+				Tile tile = unpos.getTile(i);
+				if(tile == null) continue;
+				
+				if(pos.orientation == Position.HORIZONTAL) columns[pos.x + i][pos.y] = tile;
+				else columns[pos.x][pos.y + i] = tile;
+				
+			}
+			
+		}
+		
+		return boards;
+		
+	}
+	
+	// The board's complex slots and the distinct simple slots they are made of
+	private static Object[] getSlots(BoardSnapshot board) {
+		
+		LinkedHashSet<Object> slots = new LinkedHashSet<Object>();
+		
+		for(AbstractMap.SimpleEntry<ComplexSlot, ArrayList<Position>> entry : new BoardSlots(board).getSlots()) {
+			
+			ComplexSlot slot = entry.getKey();
+			
+			slots.add(slot);
+			slots.add(slot.getMainSlot());
+			
+			for(int i = 0; i < slot.getLength(); ++i)
+				if(slot.getAttachedSlot(i) != null) slots.add(slot.getAttachedSlot(i));
+			
+		}
+		
+		return slots.toArray();
+		
+	}
+	
+	private static double timeHashtables(List<Object[]> putSlots, List<Object[]> lookupSlots, int slotCount) {
+		
+		long start = System.nanoTime();
+		long count = 0;
+		
+		for(int pass = 0; pass < PASSES; ++pass)
+			for(int board = 0; board < putSlots.size(); ++board) {
+				
+				Hashtable<Object, Object> table = new Hashtable<Object, Object>();
+				
+				for(Object slot : putSlots.get(board))
+					if(table.get(slot) == null) table.put(slot, slot);
+				
+				for(Object slot : lookupSlots.get(board))
+					if(table.get(slot) != null) ++count;
+				
+				for(Object slot : putSlots.get(board))
+					table.remove(slot);
+				
+			}
+		
+		sink += count;
+		return (double) (System.nanoTime() - start) / PASSES / slotCount;
+		
+	}
+	
+	private static double timeInternTables(List<Object[]> putSlots, List<Object[]> lookupSlots, int slotCount) {
+		
+		long start = System.nanoTime();
+		long count = 0;
+		
+		for(int pass = 0; pass < PASSES; ++pass)
+			for(int board = 0; board < putSlots.size(); ++board) {
+				
+				InternTable<Object, Object> table = new InternTable<Object, Object>();
+				
+				for(Object slot : putSlots.get(board))
+					if(table.get(slot) == null) table.put(slot, slot);
+				
+				for(Object slot : lookupSlots.get(board))
+					if(table.get(slot) != null) ++count;
+				
+				for(Object slot : putSlots.get(board))
+					table.remove(slot);
+				
+			}
+		
+		sink += count;
+		return (double) (System.nanoTime() - start) / PASSES / slotCount;
+		
+	}
+	
+	private static double timeEnumeration(BoardSnapshot board) {
+		
+		long start = System.nanoTime();
+		
+		for(int i = 0; i < ENUMERATIONS; ++i)
+			sink += new BoardSlots(board).getSlots().size();
+		
+		return (System.nanoTime() - start) / 1e6 / ENUMERATIONS;
+		
+	}
+	
+}
@@ -0,0 +1,130 @@
+package com.daretodebug.xwords;
+
+import java.util.*;
+
+final class AnagramIndex {
+	
+	private final int wordLength;
+	private final byte[] signatures; // sorted letter codes of each group, one row per group
+	private final int[] groupStarts; // groupStarts[g] to groupStarts[g + 1] index into wordIds
+	private final int[] wordIds;
+	
+	public AnagramIndex(String[] words, int wordLength) {
+		
+		this.wordLength = wordLength;
+		
+		byte[] letters = new byte[words.length * wordLength];
+		
+		for(int wordIndex = 0; wordIndex < words.length; ++wordIndex) {
+			
+			int offset = wordIndex * wordLength;
+			
+			for(int i = 0; i < wordLength; ++i)
+				letters[offset + i] = (byte) (words[wordIndex].charAt(i) - 'A');
+			
+			Arrays.sort(letters, offset, offset + wordLength);
+			
+		}
+		
+		// The sort is stable, so word IDs stay in dictionary order within each group
+		int[] order = WordDictionary.sortRows(letters, words.length, wordLength);
+		
+		wordIds = new int[words.length];
+		int[] groupStarts = new int[words.length + 1];
+		byte[] signatures = new byte[words.length * wordLength];
+		int groupCount = 0;
+		
+		for(int i = 0; i < order.length; ++i) {
+			
+			int offset = order[i];
+			wordIds[i] = offset / wordLength;
+			
+			if(groupCount > 0 && equalRows(signatures, (groupCount - 1) * wordLength, letters, offset)) continue;
+			
+			System.arraycopy(letters, offset, signatures, groupCount * wordLength, wordLength);
+			groupStarts[groupCount++] = i;
+			
+		}
+		
+		groupStarts[groupCount] = words.length;
+		
+		this.groupStarts = Arrays.copyOf(groupStarts, groupCount + 1);
+		this.signatures = Arrays.copyOf(signatures, groupCount * wordLength);
+		
+	}
+	
+	public int getWordLength() {
+		return wordLength;
+	}
+	
+	// Sets the bit of every word that can be spelled with wordLength of the given tiles
+	public void findAnagrams(int[] letterCounts, int blankCount, long[] result) {
+		
+		int[] remaining = Arrays.copyOf(letterCounts, 26);
+		findAnagrams(0, 0, groupStarts.length - 1, remaining, blankCount, result);
+		
+	}
+	
+	// Walks the signatures as a trie: every group in [from, to) shares its first position
+	// letters, so each letter that can follow is found by a binary search on the next column
+	private void findAnagrams(int position, int from, int to, int[] remaining, int blankCount, long[] result) {
+		
+		if(position == wordLength) {
+			
+			for(int group = from; group < to; ++group)
+				for(int i = groupStarts[group]; i < groupStarts[group + 1]; ++i)
+					result[wordIds[i] >>> 6] |= 1L << wordIds[i];
+			
+			return;
+			
+		}
+		
+		while(from < to) {
+			
+			int letter = signatures[from * wordLength + position];
+			int end = findEnd(position, from, to, letter);
+			
+			if(remaining[letter] > 0) {
+				
+				--remaining[letter];
+				findAnagrams(position + 1, from, end, remaining, blankCount, result);
+				++remaining[letter];
+				
+			} else if(blankCount > 0)
+				findAnagrams(position + 1, from, end, remaining, blankCount - 1, result);
+			
+			from = end;
+			
+		}
+		
+	}
+	
+	// Returns the first group in [from, to) with a letter past the given one at the position
+	private int findEnd(int position, int from, int to, int letter) {
+		
+		int low = from;
+		int high = to;
+		
+		while(low < high) {
+			
+			int mid = (low + high) >>> 1;
+			
+			if(signatures[mid * wordLength + position] <= letter) low = mid + 1;
+			else high = mid;
+			
+		}
+		
+		return low;
+		
+	}
+	
+	private boolean equalRows(byte[] a, int aOffset, byte[] b, int bOffset) {
+		
+		for(int i = 0; i < wordLength; ++i)
+			if(a[aOffset + i] != b[bOffset + i]) return false;
+		
+		return true;
+		
+	}
+	
+}
@@ -18,6 +18,9 @@ public interface BoardModel {
 	
 	public void playMove(Move move);
 	public void overlayMove(Move move);
+	
+	// Searches run on snapshots and score bonuses with BoardSnapshot.getBonus, so this must add
+	// what getBonus does for a snapshot of this board
 	public int addBonus(int score, BoardModel.UnpositionedMove move, BoardModel.Position position);
 	
 	public static final class Position {
@@ -64,6 +67,8 @@ public interface BoardModel {
 		
 	}
 	
+	// Slots cache their words for the last dictionary and hand they were asked about; the
+	// caches are guarded by each slot's lock so that a search can share slots across threads
 	public static final class SlotMask {
 		
 		private WordDictionary.Selection doableWords;
@@ -186,7 +191,7 @@ public interface BoardModel {
 			return mask.length - emptyCount;
 		}
 		
-		public void releaseWords() {
+		public synchronized void releaseWords() {
 			
 			doableWords = null;
 			hand = null;
@@ -197,62 +202,76 @@ public interface BoardModel {
 			return mask[index];
 		}
 		
-		public WordDictionary.Selection getDoableWords(Hand hand, WordDictionary dictionary) {
+		public synchronized WordDictionary.Selection getDoableWords(Hand hand, WordDictionary dictionary) {
 			
 			if(doableWords != null && doableWords.getDictionary() == dictionary && this.hand.equals(hand))
 				return doableWords;
 			
 			this.hand = hand;
+			this.doableWords = findDoableWords(new Hand[] { hand }, dictionary)[0];
 			
-			if(hand.getTileCount() < emptyCount) {
-				
-				this.doableWords = dictionary.selectNone(mask.length);
-				this.doableWords.freeze();
-				
-				return this.doableWords;
-				
-			}
+			return this.doableWords;
 			
-			List<String> words = dictionary.getWordsOfLength(mask.length);
-			BitSet doableWords = new BitSet(words.size());
+		}
+		
+		// Works out the doable words for several hands at once; they go through the shared cache,
+		// but none of them are kept as this mask's last hand
+		public WordDictionary.Selection[] findDoableWords(Hand[] hands, WordDictionary dictionary) {
+			
+			DoableWordsCache cache = DoableWordsCache.getShared();
 			
-			LetterIntMap letterCounts = new LetterIntMap();
-			int blankCount;
+			WordDictionary.Selection[] doableWords = new WordDictionary.Selection[hands.length];
+			ArrayList<Integer> engineHands = new ArrayList<Integer>();
 			
-			nextWord:
-			for(int i = 0; i < words.size(); ++i) {
+			for(int i = 0; i < hands.length; ++i) {
+				
+				Hand hand = hands[i];
 				
-				hand.getLetterCounts(letterCounts);
-				blankCount = hand.getBlankCount();
+				if(hand.getTileCount() < emptyCount) {
+					
+					doableWords[i] = dictionary.selectNone(mask.length);
+					continue;
+					
+				}
 				
-				String word = words.get(i);
+				doableWords[i] = cache.get(dictionary, mask, hand);
+				if(doableWords[i] != null) continue;
 				
-				for(int j = 0; j < mask.length; ++j) {
+				// Words that use no board letters are looked up directly by their anagrams
+				if(emptyCount == mask.length) {
 					
-					// If this space is already filled, continue to next space
-					if(mask[j]) continue;
+					doableWords[i] = dictionary.selectAnagrams(hand, mask.length);
+					doableWords[i].freeze();
 					
-					// We have to fill this space; find out if we can
-					if(letterCounts.decrement(word.charAt(j)) >= 0)
-						continue;
+					cache.put(dictionary, mask, hand, doableWords[i]);
 					
-					if((--blankCount) >= 0)
-						continue;
+				} else engineHands.add(i);
+				
+			}
+			
+			if(!engineHands.isEmpty()) {
+				
+				Hand[] engineHandArray = new Hand[engineHands.size()];
+				for(int i = 0; i < engineHandArray.length; ++i)
+					engineHandArray[i] = hands[engineHands.get(i)];
+				
+				WordDictionary.Selection[] engineWords = dictionary.getDoableWordEngine().getDoableWords(dictionary, mask, engineHandArray);
+				
+				for(int i = 0; i < engineWords.length; ++i) {
 					
-					// We don't have enough letters/blanks; skip to next word
-					continue nextWord;
+					engineWords[i].freeze();
+					cache.put(dictionary, mask, engineHandArray[i], engineWords[i]);
+					
+					doableWords[engineHands.get(i)] = engineWords[i];
 					
 				}
 				
-				// This word is doable
-				doableWords.set(i);
-				
 			}
 			
-			this.doableWords = dictionary.new Selection(mask.length, doableWords);
-			this.doableWords.freeze();
+			for(WordDictionary.Selection selection : doableWords)
+				selection.freeze();
 			
-			return this.doableWords;
+			return doableWords;
 			
 		}
 		
@@ -286,6 +305,9 @@ public interface BoardModel {
 	public static final class SimpleSlot {
 		
 		private WordDictionary.Selection fittingWords;
+		private WordDictionary crossCheckDictionary;
+		private int crossCheck;
+		private int[] crossWordIds;
 		private SlotMask mask;
 		private final char[] slot;
 		private final int hash;
@@ -364,8 +386,12 @@ public interface BoardModel {
 			return mask.getFullCount();
 		}
 		
-		public void releaseWords() {
+		public synchronized void releaseWords() {
+			
 			fittingWords = null;
+			crossCheckDictionary = null;
+			crossWordIds = null;
+			
 		}
 		
 		public char getLetter(int index) {
@@ -381,48 +407,98 @@ public interface BoardModel {
 			
 		}
 		
-		public void internSlotMask(Hashtable<SlotMask, SlotMask> oldPool, Hashtable<SlotMask, SlotMask> newPool) {
+		public void internSlotMask(SlotMask intern) {
 			
-			SlotMask intern = newPool.get(mask);
-			if(intern != null) {
-				
-				mask = intern;
-				return;
-				
-			}
-			
-			intern = oldPool.get(mask);
-			if(intern != null) {
-				
-				newPool.put(intern, intern);
-				mask = intern;
-				return;
-				
-			}
-			
-			newPool.put(mask, mask);
+			if(!mask.equals(intern)) throw new IllegalArgumentException("The given mask does not match this slot's mask.");
+			mask = intern;
 			
 		}
 		
-		public WordDictionary.Selection getFittingWords(WordDictionary dictionary) {
+		public synchronized WordDictionary.Selection getFittingWords(WordDictionary dictionary) {
 			
 			if(fittingWords != null && fittingWords.getDictionary() == dictionary)
 				return fittingWords;
 			
-			fittingWords = dictionary.new Selection(slot.length);
+			FittingWordsCache cache = FittingWordsCache.getShared();
+			
+			fittingWords = cache.get(dictionary, slot);
+			if(fittingWords != null) return fittingWords;
+			
+			char[] letters = new char[mask.getFullCount()];
+			int[] positions = new int[letters.length];
+			int count = 0;
 			
 			for(int i = 0; i < slot.length; ++i) {
 				
 				char letter = slot[i];
-				if(letter != 0) fittingWords = fittingWords.and(letter, i);
+				
+				if(letter != 0) {
+					
+					letters[count] = letter;
+					positions[count++] = i;
+					
+				}
 				
 			}
 			
+			fittingWords = dictionary.new Selection(slot.length).andAll(letters, positions);
 			fittingWords.freeze();
+			
+			cache.put(dictionary, slot, fittingWords);
 			return fittingWords;
 			
 		}
 		
+		// Returns the letters (bit 0 for A through bit 25 for Z) that make a word when placed in
+		// this slot's only empty space
+		public synchronized int getCrossCheck(WordDictionary dictionary) {
+			
+			if(crossCheckDictionary == dictionary)
+				return crossCheck;
+			
+			if(mask.getEmptyCount() != 1)
+				throw new IllegalStateException("Cross-checks can only be found for slots with exactly one empty space.");
+			
+			char[] word = getLetters();
+			int empty = mask.getFirstEmpty();
+			int crossCheck = 0;
+			
+			// The words made are kept for the letters that make one, in letter order
+			int[] wordIds = new int[26];
+			int wordCount = 0;
+			
+			for(char ch = 'A'; ch <= 'Z'; ++ch) {
+				
+				word[empty] = ch;
+				
+				int wordId = dictionary.getWordId(word);
+				if(wordId < 0) continue;
+				
+				crossCheck |= 1 << (ch - 'A');
+				wordIds[wordCount++] = wordId;
+				
+			}
+			
+			this.crossCheck = crossCheck;
+			this.crossWordIds = Arrays.copyOf(wordIds, wordCount);
+			this.crossCheckDictionary = dictionary;
+			
+			return crossCheck;
+			
+		}
+		
+		// The word made by placing the letter in this slot's only empty space, by its index
+		// among the words of this slot's length, or -1 if it doesn't make one
+		public synchronized int getCrossWordId(WordDictionary dictionary, char letter) {
+			
+			int crossCheck = getCrossCheck(dictionary);
+			int bit = 1 << (letter - 'A');
+			
+			if((crossCheck & bit) == 0) return -1;
+			return crossWordIds[Integer.bitCount(crossCheck & (bit - 1))];
+			
+		}
+		
 		public SlotMask getMask() {
 			return mask;
 		}
@@ -457,7 +533,7 @@ public interface BoardModel {
 	public static final class ComplexSlot {
 		
 		private WordDictionary.Selection fittingWords;
-		private List<UnpositionedMove> playableMoves;
+		private PlayableWords playableWords;
 		private WordDictionary dictionary;
 		private Hand hand;
 		private final SimpleSlot mainSlot;
@@ -513,16 +589,31 @@ public interface BoardModel {
 			return attachedSlots[index];
 		}
 		
-		public void releaseWords() {
+		// Highest score, before bonuses, that any move in this slot could make at the given
+		// position, or -1 if the hand has too few tiles; tileValues must be sorted highest first
+		public int getScoreBound(BoardModel board, Position position, int[] tileValues) {
+			
+			if(mainSlot.getEmptyCount() > tileValues.length) return -1;
+			return new ScoringKernel(this, board, position).getScoreBound(tileValues);
+			
+		}
+		
+		// Score of playing the word at the given position, before bonuses; bit k of blanks is
+		// set if the k-th open square takes a blank
+		public int getScore(BoardModel board, Position position, String word, long blanks) {
+			return new ScoringKernel(this, board, position).getScore(word, blanks);
+		}
+		
+		public synchronized void releaseWords() {
 			
 			fittingWords = null;
-			playableMoves = null;
+			playableWords = null;
 			dictionary = null;
 			hand = null;
 			
 		}
 		
-		public WordDictionary.Selection getFittingWords(WordDictionary dictionary) {
+		public synchronized WordDictionary.Selection getFittingWords(WordDictionary dictionary) {
 			
 			if(fittingWords != null && fittingWords.getDictionary() == dictionary)
 				return fittingWords;
@@ -534,36 +625,16 @@ public interface BoardModel {
 				SimpleSlot attachedSlot = attachedSlots[i];
 				if(attachedSlot == null) continue;
 				
-				WordDictionary.Selection attachedWords = attachedSlot.getFittingWords(dictionary);
-				WordDictionary.Selection possibleLetters = null;
-				
-				for(String attachedWord : attachedWords) {
-					
-					char possibleLetter;
-					
-					try {
-						possibleLetter = attachedWord.charAt(attachedSlot.getMask().getFirstEmpty());
-					} catch(StringIndexOutOfBoundsException e) {
-						
-						System.out.println("Attached word: " + attachedWord + "\nChar index: " + attachedSlot.getMask().getFirstEmpty());
-						
-						throw e;
-						
-					}
-					
-					if(possibleLetters == null) possibleLetters = dictionary.new Selection(attachedSlots.length, possibleLetter, i);
-					else possibleLetters = possibleLetters.or(possibleLetter, i);
-					
-				}
+				int possibleLetters = attachedSlot.getCrossCheck(dictionary);
 				
-				if(possibleLetters == null) {
+				if(possibleLetters == 0) {
 					
 					fittingWords = dictionary.selectNone(attachedSlots.length);
 					break;
 					
 				}
 				
-				fittingWords = fittingWords.and(possibleLetters);
+				fittingWords = fittingWords.andAny(possibleLetters, i);
 				
 			}
 			
@@ -572,18 +643,17 @@ public interface BoardModel {
 			
 		}
 		
-		private void addMovesForWord(String mainWord, String[] attachedWords, int startingIndex, Tile[] placedTiles, LetterIntMap remainingLetters, int remainingBlanks, ArrayList<UnpositionedMove> moves) {
+		// Adds the word once for each way the hand can fill the open squares from startingIndex
+		// on; bit k of blanks is set if the k-th open square takes a blank
+		private void addBlankChoices(String mainWord, int wordId, int startingIndex, int openIndex, long blanks, LetterIntMap remainingLetters, int remainingBlanks, PlayableWords words) {
 			
 			// Find empty spot
 			for(;;) {
 				
-				// We're at the end, add the move
+				// We're at the end, add the word
 				if(startingIndex >= mainSlot.getLength()) {
 					
-					Tile[] move = new Tile[placedTiles.length];
-					System.arraycopy(placedTiles, 0, move, 0, placedTiles.length);
-					moves.add(new UnpositionedMove(this, move, mainWord, attachedWords));
-					
+					words.add(wordId, blanks, blanks);
 					return;
 					
 				}
@@ -598,63 +668,153 @@ public interface BoardModel {
 			char letter = mainWord.charAt(startingIndex);
 			
 			// First put a real tile there if we can
-			if(remainingLetters.decrement(letter) >= 0) {
-				
-				placedTiles[startingIndex] = Tile.getLetter(letter);
-				addMovesForWord(mainWord, attachedWords, startingIndex + 1, placedTiles, remainingLetters, remainingBlanks, moves);
-				
-			}
+			if(remainingLetters.decrement(letter) >= 0)
+				addBlankChoices(mainWord, wordId, startingIndex + 1, openIndex + 1, blanks, remainingLetters, remainingBlanks, words);
 			
 			remainingLetters.increment(letter);
 			
 			// Then put a blank tile there if we can
-			if(remainingBlanks > 0) {
+			if(remainingBlanks > 0)
+				addBlankChoices(mainWord, wordId, startingIndex + 1, openIndex + 1, blanks | (1L << openIndex), remainingLetters, remainingBlanks - 1, words);
+			
+		}
+		
+		// Every way the hand can play the word in this slot, each listed on its own, real tiles
+		// before blanks
+		public PlayableWords getBlankChoices(WordDictionary dictionary, Hand hand, int wordId) {
+			
+			PlayableWords choices = new PlayableWords();
+			LetterIntMap remainingLetters = new LetterIntMap();
+			
+			hand.getLetterCounts(remainingLetters);
+			addBlankChoices(dictionary.getWord(getLength(), wordId), wordId, 0, 0, 0, remainingLetters, hand.getBlankCount(), choices);
+			
+			return choices;
+			
+		}
+		
+		public List<UnpositionedMove> getPlayableMoves(WordDictionary dictionary, Hand hand) {
+			return createMoves(dictionary, hand, getPlayableWords(dictionary, hand));
+		}
+		
+		// Moves are made from the playable words each time, so none are held by the slot
+		public List<UnpositionedMove> findPlayableMoves(WordDictionary dictionary, Hand hand, WordDictionary.Selection doableWords) {
+			return createMoves(dictionary, hand, findPlayableWords(dictionary, hand, doableWords));
+		}
+		
+		// Lists every way of placing the blanks, not just the one each word is kept with
+		private List<UnpositionedMove> createMoves(WordDictionary dictionary, Hand hand, PlayableWords playableWords) {
+			
+			ArrayList<UnpositionedMove> playableMoves = new ArrayList<UnpositionedMove>(playableWords.size());
+			
+			for(int i = 0; i < playableWords.size(); ++i) {
+				
+				PlayableWords choices = getBlankChoices(dictionary, hand, playableWords.getWordId(i));
 				
-				placedTiles[startingIndex] = Tile.getBlankLetter(letter);
-				addMovesForWord(mainWord, attachedWords, startingIndex + 1, placedTiles, remainingLetters, remainingBlanks - 1, moves);
+				for(int j = 0; j < choices.size(); ++j)
+					playableMoves.add(createMove(dictionary, choices.getWordId(j), choices.getBlanks(j)));
 				
 			}
 			
+			return Collections.unmodifiableList(playableMoves);
+			
 		}
 		
-		public List<UnpositionedMove> getPlayableMoves(WordDictionary dictionary, Hand hand) {
+		public synchronized PlayableWords getPlayableWords(WordDictionary dictionary, Hand hand) {
 			
-			if(playableMoves != null && this.dictionary == dictionary && hand.equals(this.hand))
-				return playableMoves;
+			if(playableWords != null && this.dictionary == dictionary && hand.equals(this.hand))
+				return playableWords;
 			
-			WordDictionary.Selection fittingWords = getFittingWords(dictionary);
 			WordDictionary.Selection doableWords = mainSlot.getMask().getDoableWords(hand, dictionary);
+			PlayableWords playableWords = findPlayableWords(dictionary, hand, doableWords);
 			
-			WordDictionary.Selection playableWords = fittingWords.and(doableWords);
+			this.dictionary = dictionary;
+			this.hand = hand;
 			
-			ArrayList<UnpositionedMove> playableMoves = new ArrayList<BoardModel.UnpositionedMove>();
+			return (this.playableWords = playableWords);
 			
-			LetterIntMap remainingLetters = new LetterIntMap();
+		}
+		
+		// Narrows the given doable words of the main slot down to the ones that fit, without
+		// caching them; only the fitting words, which don't depend on the hand, are cached
+		public PlayableWords findPlayableWords(WordDictionary dictionary, Hand hand, WordDictionary.Selection doableWords) {
+			
+			WordDictionary.Selection fittingWords = getFittingWords(dictionary);
 			
-			for(String mainWord : playableWords) {
+			PlayableWords words = new PlayableWords();
+			LetterIntMap remainingLetters = null;
+			
+			for(int wordId = fittingWords.nextWordId(doableWords, 0); wordId >= 0; wordId = fittingWords.nextWordId(doableWords, wordId + 1)) {
+				
+				if(remainingLetters == null) remainingLetters = new LetterIntMap();
+				
+				hand.getLetterCounts(remainingLetters);
+				String word = dictionary.getWord(getLength(), wordId);
+				
+				// Real tiles go on the first squares needing each letter and blanks on the rest
+				long blanks = 0;
 				
-				String[] attachedWords = new String[attachedSlots.length];
-				for(int i = 0; i < attachedSlots.length; ++i) {
+				for(int i = 0, openIndex = 0; i < attachedSlots.length; ++i) {
 					
-					SimpleSlot attachedSlot = attachedSlots[i];
-					if(attachedSlot == null) continue;
+					if(mainSlot.getLetter(i) != 0) continue;
 					
-					char[] attachedWord = attachedSlot.getLetters();
-					attachedWord[attachedSlot.getMask().getFirstEmpty()] = mainWord.charAt(i);
+					if(remainingLetters.decrement(word.charAt(i)) < 0) blanks |= 1L << openIndex;
+					++openIndex;
 					
-					attachedWords[i] = dictionary.internWord(attachedWord);
+				}
+				
+				if(Long.bitCount(blanks) > hand.getBlankCount()) continue;
+				
+				// The blanks could just as well go on any of the squares of the letters the hand
+				// is short of
+				long blankable = 0;
+				
+				if(blanks != 0) {
+					
+					for(int i = 0, openIndex = 0; i < attachedSlots.length; ++i) {
+						
+						if(mainSlot.getLetter(i) != 0) continue;
+						
+						if(remainingLetters.get(word.charAt(i)) < 0) blankable |= 1L << openIndex;
+						++openIndex;
+						
+					}
 					
 				}
 				
-				hand.getLetterCounts(remainingLetters);
-				addMovesForWord(mainWord, attachedWords, 0, new Tile[mainWord.length()], remainingLetters, hand.getBlankCount(), playableMoves);
+				words.add(wordId, blanks, blankable);
 				
 			}
 			
-			this.dictionary = dictionary;
-			this.hand = hand;
+			return words;
+			
+		}
+		
+		// The move playing the given word, with blanks on the open squares set in blanks
+		UnpositionedMove createMove(WordDictionary dictionary, int wordId, long blanks) {
+			
+			String mainWord = dictionary.getWord(getLength(), wordId);
+			
+			Tile[] move = new Tile[attachedSlots.length];
+			String[] attachedWords = new String[attachedSlots.length];
+			int openIndex = 0;
 			
-			return (this.playableMoves = Collections.unmodifiableList(playableMoves));
+			for(int i = 0; i < attachedSlots.length; ++i) {
+				
+				if(mainSlot.getLetter(i) != 0) continue;
+				
+				char letter = mainWord.charAt(i);
+				move[i] = ((blanks & (1L << openIndex++)) != 0) ? Tile.getBlankLetter(letter) : Tile.getLetter(letter);
+				
+				SimpleSlot attachedSlot = attachedSlots[i];
+				if(attachedSlot == null) continue;
+				
+				// The word is in the dictionary, since the letter passed the cross-check
+				attachedWords[i] = dictionary.getWord(attachedSlot.getLength(), attachedSlot.getCrossWordId(dictionary, letter));
+				
+			}
+			
+			return new UnpositionedMove(this, move, mainWord, attachedWords, blanks);
 			
 		}
 		
@@ -696,6 +856,61 @@ public interface BoardModel {
 		
 	}
 	
+	// The words a hand can play in a slot, by their index among the words of the slot's length,
+	// each with the open squares that take blanks; bit k is set if the k-th open square does.
+	// Each word is listed once, with its blanks on the last squares of the letters the hand is
+	// short of; the same number of blanks can go on any of those letters' squares, which are
+	// given as blankable, and the blanks are fixed where they are if the two are the same
+	public static final class PlayableWords {
+		
+		private static final int[] NO_WORD_IDS = new int[0];
+		private static final long[] NO_BLANKS = new long[0];
+		
+		// Most slots have no playable words, so nothing is allocated until one is added
+		private int[] wordIds = NO_WORD_IDS;
+		private long[] blanks = NO_BLANKS;
+		private long[] blankable = NO_BLANKS;
+		private int size;
+		
+		PlayableWords() {}
+		
+		void add(int wordId, long blanks, long blankable) {
+			
+			if(size == wordIds.length) {
+				
+				int capacity = Math.max(size * 2, 16);
+				
+				wordIds = Arrays.copyOf(wordIds, capacity);
+				this.blanks = Arrays.copyOf(this.blanks, capacity);
+				this.blankable = Arrays.copyOf(this.blankable, capacity);
+				
+			}
+			
+			wordIds[size] = wordId;
+			this.blanks[size] = blanks;
+			this.blankable[size] = blankable;
+			++size;
+			
+		}
+		
+		public int size() {
+			return size;
+		}
+		
+		public int getWordId(int index) {
+			return wordIds[index];
+		}
+		
+		public long getBlanks(int index) {
+			return blanks[index];
+		}
+		
+		public long getBlankable(int index) {
+			return blankable[index];
+		}
+		
+	}
+	
 	public final static class UnpositionedMove {
 		
 		private final Tile[] move;
@@ -703,14 +918,16 @@ public interface BoardModel {
 		
 		private final String mainWord;
 		private final String[] attachedWords;
+		private final long blanks;
 		
-		private UnpositionedMove(ComplexSlot slot, Tile[] move, String mainWord, String[] attachedWords) {
+		private UnpositionedMove(ComplexSlot slot, Tile[] move, String mainWord, String[] attachedWords, long blanks) {
 			
 			this.slot = slot;
 			this.move = move;
 			
 			this.mainWord = mainWord;
 			this.attachedWords = attachedWords;
+			this.blanks = blanks;
 			
 		}
 		
@@ -739,122 +956,12 @@ public interface BoardModel {
 		}
 		
 		public Move position(BoardModel board, Position position) {
-			
-			int height = board.getHeight();
-			int width = board.getWidth();
-			
-			int score = 0;
-			int mult = 1;
-			int totalAttached = 0;
-			
-			if(position.orientation == Position.HORIZONTAL) {
-				
-				if(position.y < 0 || position.y >= height)
-					throw new IllegalArgumentException("Y must be within the board's bounds.");
-				
-				if(position.x < 0 || position.x + getLength() > width)
-					throw new IllegalArgumentException("X must be within the board's bounds and have enough space following it for this move.");
-				
-				// Calculate score
-				for(int i = 0; i < move.length; ++i) {
-					
-					int x = position.x + i;
-					
-					Tile tile;
-					
-					// If we're not placing a tile here, just add the tile value with no modifiers
-					if((tile = move[i]) == null)
-						score += board.getTileAt(x, position.y).value;
-					
-					// If we're placing a tile here, account for modifiers and attached word (if any)
-					else {
-						
-						BoardTileData data = board.getTileDataAt(x, position.y);
-						
-						score += tile.value * data.getLetterMultiplier();
-						mult *= data.getWordMultiplier();
-						
-						// If there's an attached word
-						SimpleSlot attachedSlot = slot.getAttachedSlot(i);
-						if(attachedSlot != null) {
-							
-							int attachedScore = tile.value * data.getLetterMultiplier();
-							int slotOffset = position.y - attachedSlot.getMask().getFirstEmpty();
-							
-							for(int j = 0; j < attachedSlot.getLength(); ++j) {
-								
-								Tile attachedTile = board.getTileAt(x, slotOffset + j);
-								
-								if(attachedTile != null)
-									attachedScore += attachedTile.value;
-								
-							}
-							
-							attachedScore *= data.getWordMultiplier();
-							totalAttached += attachedScore;
-							
-						}
-						
-					}
-					
-				}
-				
-			} else { // VERTICAL
-				
-				if(position.x < 0 || position.x >= width)
-					throw new IllegalArgumentException("X must be within the board's bounds.");
-				
-				if(position.y < 0 || position.y + getLength() > height)
-					throw new IllegalArgumentException("Y must be within the board's bounds and have enough space following it for this move.");
-				
-				// Calculate score
-				for(int i = 0; i < move.length; ++i) {
-					
-					int y = position.y + i;
-					
-					Tile tile;
-					
-					// If we're not placing a tile here, just add the tile value with no modifiers
-					if((tile = move[i]) == null)
-						score += board.getTileAt(position.x, y).value;
-					
-					// If we're placing a tile here, account for modifiers and attached word (if any)
-					else {
-						
-						BoardTileData data = board.getTileDataAt(position.x, y);
-						
-						score += tile.value * data.getLetterMultiplier();
-						mult *= data.getWordMultiplier();
-						
-						// If there's an attached word
-						SimpleSlot attachedSlot = slot.getAttachedSlot(i);
-						if(attachedSlot != null) {
-							
-							int attachedScore = tile.value * data.getLetterMultiplier();
-							int slotOffset = position.x - attachedSlot.getMask().getFirstEmpty();
-							
-							for(int j = 0; j < attachedSlot.getLength(); ++j) {
-								
-								Tile attachedTile = board.getTileAt(slotOffset + j, y);
-								
-								if(attachedTile != null)
-									attachedScore += attachedTile.value;
-								
-							}
-							
-							attachedScore *= data.getWordMultiplier();
-							totalAttached += attachedScore;
-							
-						}
-						
-					}
-					
-				}
-				
-			}
-			
-			return new Move(board, this, position, board.addBonus(score * mult + totalAttached, this, position));
-			
+			return new Move(board, this, position, board.addBonus(slot.getScore(board, position, mainWord, blanks), this, position));
+		}
+		
+		// The score must already include any bonus
+		Move position(BoardModel board, Position position, int score) {
+			return new Move(board, this, position, score);
 		}
 		
 	}
@@ -0,0 +1,485 @@
+package com.daretodebug.xwords;
+
+import java.util.*;
+
+import com.daretodebug.xwords.BoardModel.*;
+
+// The complex slots of a board and the positions they are found at, kept up to date line by
+// line as the board changes. Not thread safe; use one instance per board being searched
+final class BoardSlots {
+	
+	private BoardSnapshot board;
+	
+	// The board's lines, unpacked again only when they change
+	private Tile[][] rows;
+	private Tile[][] columns;
+	
+	private final ArrayList<ArrayList<LineSlot>> rowSlots;
+	private final ArrayList<ArrayList<LineSlot>> columnSlots;
+	
+	// Slots are interned on the searching thread alone, so the tables need no locking
+	private final InternTable<SlotMask, Interned<SlotMask>> slotMasks;
+	private final InternTable<SimpleSlot, Interned<SimpleSlot>> simpleSlots;
+	private final InternTable<ComplexSlot, AbstractMap.SimpleEntry<ComplexSlot, ArrayList<Position>>> complexSlots;
+	
+	// Slots that may have lost their last user while lines are being recomputed; they are
+	// only dropped afterwards so that slots which come straight back keep their cached words
+	private final ArrayList<AbstractMap.SimpleEntry<ComplexSlot, ArrayList<Position>>> retiredComplexSlots;
+	private final ArrayList<SimpleSlot> retiredSimpleSlots;
+	
+	// Up to keepLimit slots dropped from the board are kept for later boards that bring them
+	// back, so that equal slots on different boards share their cached words
+	private final int keepLimit;
+	private final InternTable<SimpleSlot, SimpleSlot> keptSimpleSlots;
+	private final InternTable<ComplexSlot, ComplexSlot> keptComplexSlots;
+	
+	public BoardSlots() {
+		this(0);
+	}
+	
+	public BoardSlots(int keepLimit) {
+		
+		this.keepLimit = keepLimit;
+		keptSimpleSlots = new InternTable<SimpleSlot, SimpleSlot>();
+		keptComplexSlots = new InternTable<ComplexSlot, ComplexSlot>();
+		
+		slotMasks = new InternTable<SlotMask, Interned<SlotMask>>();
+		simpleSlots = new InternTable<SimpleSlot, Interned<SimpleSlot>>();
+		complexSlots = new InternTable<ComplexSlot, AbstractMap.SimpleEntry<ComplexSlot, ArrayList<Position>>>();
+		
+		retiredComplexSlots = new ArrayList<AbstractMap.SimpleEntry<ComplexSlot, ArrayList<Position>>>();
+		retiredSimpleSlots = new ArrayList<SimpleSlot>();
+		
+		rowSlots = new ArrayList<ArrayList<LineSlot>>();
+		columnSlots = new ArrayList<ArrayList<LineSlot>>();
+		
+	}
+	
+	public BoardSlots(BoardSnapshot board) {
+		
+		this();
+		update(board);
+		
+	}
+	
+	// The board the slots were last brought up to date with
+	public BoardSnapshot getBoard() {
+		return board;
+	}
+	
+	// Each complex slot on the board with the positions it is found at
+	public Collection<AbstractMap.SimpleEntry<ComplexSlot, ArrayList<Position>>> getSlots() {
+		return complexSlots.values();
+	}
+	
+	private static int getFirstStartPointAtOrBefore(Tile[] row, int index) {
+		
+		--index;
+		for(; index >= 0; --index)
+			if(row[index] == null) break;
+		
+		return ++index;
+		
+	}
+	
+	private static int getFirstEndPointAfter(Tile[] row, int index) {
+		
+		++index;
+		for(; index < row.length; ++index)
+			if(row[index] == null) break;
+		
+		return index;
+		
+	}
+	
+	// Orders positions the way a pass over every row and then every column finds them
+	private static int comparePositions(Position a, Position b) {
+		
+		if(a.orientation != b.orientation) return (a.orientation == Position.HORIZONTAL) ? -1 : 1;
+		
+		if(a.orientation == Position.HORIZONTAL) {
+			
+			if(a.y != b.y) return (a.y < b.y) ? -1 : 1;
+			return (a.x < b.x) ? -1 : (a.x > b.x) ? 1 : 0;
+			
+		}
+		
+		if(a.x != b.x) return (a.x < b.x) ? -1 : 1;
+		return (a.y < b.y) ? -1 : (a.y > b.y) ? 1 : 0;
+		
+	}
+	
+	private static boolean isStartPoint(Tile[] row, int index) {
+		
+		if(index == 0 || row[index - 1] == null) return true;
+		
+		return false;
+		
+	}
+	
+	private static boolean isEndPoint(Tile[] row, int index) {
+		
+		if(index == row.length || row[index] == null) return true;
+		
+		return false;
+		
+	}
+	
+	// A complex slot found at one position while going through a row or column
+	private static final class LineSlot {
+		
+		public final AbstractMap.SimpleEntry<ComplexSlot, ArrayList<Position>> entry;
+		public final Position position;
+		
+		public LineSlot(AbstractMap.SimpleEntry<ComplexSlot, ArrayList<Position>> entry, Position position) {
+			
+			this.entry = entry;
+			this.position = position;
+			
+		}
+		
+	}
+	
+	private static final class Interned<T> {
+		
+		public final T item;
+		public int references;
+		
+		public Interned(T item) {
+			this.item = item;
+		}
+		
+	}
+	
+	private SimpleSlot internSlot(SimpleSlot slot) {
+		
+		Interned<SimpleSlot> intern = simpleSlots.get(slot);
+		if(intern != null) return intern.item;
+		
+		SimpleSlot kept = keptSimpleSlots.remove(slot);
+		if(kept != null) slot = kept;
+		
+		simpleSlots.put(slot, new Interned<SimpleSlot>(slot));
+		retiredSimpleSlots.add(slot);
+		
+		return slot;
+		
+	}
+	
+	private void acquireSlot(SimpleSlot slot) {
+		
+		Interned<SimpleSlot> intern = simpleSlots.get(slot);
+		if(intern.references++ > 0) return;
+		
+		// First use of this slot, so share its mask with any equal slot
+		Interned<SlotMask> mask = slotMasks.get(slot.getMask());
+		
+		if(mask == null) {
+			
+			mask = new Interned<SlotMask>(slot.getMask());
+			slotMasks.put(mask.item, mask);
+			
+		}
+		
+		++mask.references;
+		slot.internSlotMask(mask.item);
+		
+	}
+	
+	private void releaseSlot(SimpleSlot slot) {
+		
+		if(--simpleSlots.get(slot).references > 0) return;
+		
+		retiredSimpleSlots.add(slot);
+		
+		// The slot keeps its mask, so taking it again finds the same one
+		Interned<SlotMask> mask = slotMasks.get(slot.getMask());
+		if(--mask.references == 0) slotMasks.remove(mask.item);
+		
+	}
+	
+	private void keepSlot(SimpleSlot slot) {
+		
+		if(keepLimit == 0) return;
+		
+		if(keptSimpleSlots.size() >= keepLimit) {
+			
+			keptSimpleSlots.clear();
+			keptComplexSlots.clear();
+			
+		}
+		
+		keptSimpleSlots.put(slot, slot);
+		
+	}
+	
+	private void keepSlot(ComplexSlot slot) {
+		
+		if(keepLimit == 0) return;
+		if(keptComplexSlots.size() >= keepLimit) keptComplexSlots.clear();
+		
+		keptComplexSlots.put(slot, slot);
+		
+	}
+	
+	// A kept complex slot can only come back if it is made of the slots now in use
+	private ComplexSlot reviveSlot(ComplexSlot slot) {
+		
+		ComplexSlot kept = keptComplexSlots.remove(slot);
+		if(kept == null || kept.getMainSlot() != slot.getMainSlot()) return slot;
+		
+		for(int i = 0; i < slot.getLength(); ++i)
+			if(kept.getAttachedSlot(i) != slot.getAttachedSlot(i)) return slot;
+		
+		return kept;
+		
+	}
+	
+	private void addSlot(ComplexSlot slot, Position position, ArrayList<LineSlot> lineSlots) {
+		
+		AbstractMap.SimpleEntry<ComplexSlot, ArrayList<Position>> entry = complexSlots.get(slot);
+		
+		if(entry == null) {
+			
+			slot = reviveSlot(slot);
+			
+			entry = new AbstractMap.SimpleEntry<ComplexSlot, ArrayList<Position>>(slot, new ArrayList<Position>());
+			complexSlots.put(slot, entry);
+			
+			acquireSlot(slot.getMainSlot());
+			
+			for(int i = 0; i < slot.getLength(); ++i)
+				if(slot.getAttachedSlot(i) != null) acquireSlot(slot.getAttachedSlot(i));
+			
+		}
+		
+		// Keep positions in the order a full pass over the board would produce them
+		ArrayList<Position> positions = entry.getValue();
+		int index = positions.size();
+		
+		while(index > 0 && comparePositions(positions.get(index - 1), position) > 0) --index;
+		positions.add(index, position);
+		
+		lineSlots.add(new LineSlot(entry, position));
+		
+	}
+	
+	private void releaseLine(ArrayList<LineSlot> lineSlots) {
+		
+		for(LineSlot lineSlot : lineSlots) {
+			
+			ArrayList<Position> positions = lineSlot.entry.getValue();
+			positions.remove(lineSlot.position);
+			
+			if(positions.isEmpty()) retiredComplexSlots.add(lineSlot.entry);
+			
+		}
+		
+		lineSlots.clear();
+		
+	}
+	
+	private void dropRetiredSlots() {
+		
+		for(AbstractMap.SimpleEntry<ComplexSlot, ArrayList<Position>> entry : retiredComplexSlots) {
+			
+			if(!entry.getValue().isEmpty() || complexSlots.get(entry.getKey()) != entry) continue;
+			
+			ComplexSlot slot = entry.getKey();
+			complexSlots.remove(slot);
+			
+			releaseSlot(slot.getMainSlot());
+			
+			for(int i = 0; i < slot.getLength(); ++i)
+				if(slot.getAttachedSlot(i) != null) releaseSlot(slot.getAttachedSlot(i));
+			
+			keepSlot(slot);
+			
+		}
+		
+		for(SimpleSlot slot : retiredSimpleSlots) {
+			
+			Interned<SimpleSlot> intern = simpleSlots.get(slot);
+			if(intern == null || intern.item != slot || intern.references > 0) continue;
+			
+			simpleSlots.remove(slot);
+			keepSlot(slot);
+			
+		}
+		
+		retiredComplexSlots.clear();
+		retiredSimpleSlots.clear();
+		
+	}
+	
+	private void computeRowSlots(PackedBoard board, int y, ArrayList<LineSlot> lineSlots) {
+		
+		Tile[] row = rows[y];
+		int lastStart = row.length - 2;
+		
+		for(int startPoint = 0; startPoint <= lastStart; ++startPoint) {
+			
+			if(!isStartPoint(row, startPoint)) continue;
+			int lastEnd = startPoint + 2;
+			
+			for(int endPoint = row.length; endPoint >= lastEnd; --endPoint) {
+				
+				if(!isEndPoint(row, endPoint)) continue;
+				
+				if(!board.rowContainsIntersection(y, startPoint, endPoint))
+					break;
+				
+				SimpleSlot mainSlot = SimpleSlot.tryNew(row, startPoint, endPoint);
+				
+				// If we got null, there are no empty spaces, and decreasing the range certainly will not increase that
+				if(mainSlot == null) break;
+				
+				mainSlot = internSlot(mainSlot);
+				
+				SimpleSlot[] attachedSlots = new SimpleSlot[mainSlot.getLength()];
+				
+				// Get attached slots
+				for(int x = startPoint; x < endPoint; ++x) {
+					
+					// If we're not placing a tile here, no need to attach a slot
+					if(row[x] != null) continue;
+					
+					// Get associated column
+					Tile[] column = columns[x];
+					
+					int start = getFirstStartPointAtOrBefore(column, y);
+					int end = getFirstEndPointAfter(column, y);
+					
+					// If there's nothing above and below, no need to attach a slot
+					if(end - start < 2) continue;
+					
+					attachedSlots[x - startPoint] = internSlot(new SimpleSlot(column, start, end));
+					
+				}
+				
+				addSlot(new ComplexSlot(mainSlot, attachedSlots), new Position(startPoint, y, Position.HORIZONTAL), lineSlots);
+				
+			}
+			
+		}
+		
+	}
+	
+	private void computeColumnSlots(PackedBoard board, int x, ArrayList<LineSlot> lineSlots) {
+		
+		Tile[] column = columns[x];
+		int lastStart = column.length - 2;
+		
+		for(int startPoint = 0; startPoint <= lastStart; ++startPoint) {
+			
+			if(!isStartPoint(column, startPoint)) continue;
+			int lastEnd = startPoint + 2;
+			
+			for(int endPoint = column.length; endPoint >= lastEnd; --endPoint) {
+				
+				if(!isEndPoint(column, endPoint)) continue;
+				
+				if(!board.columnContainsIntersection(x, startPoint, endPoint))
+					break;
+				
+				SimpleSlot mainSlot = SimpleSlot.tryNew(column, startPoint, endPoint);
+				
+				// If we got null, there are no empty spaces, and decreasing the range certainly will not increase that
+				if(mainSlot == null) break;
+				
+				mainSlot = internSlot(mainSlot);
+				
+				SimpleSlot[] attachedSlots = new SimpleSlot[mainSlot.getLength()];
+				
+				// Get attached slots
+				for(int y = startPoint; y < endPoint; ++y) {
+					
+					// If we're not placing a tile here, no need to attach a slot
+					if(column[y] != null) continue;
+					
+					// Get associated row
+					Tile[] row = rows[y];
+					
+					int start = getFirstStartPointAtOrBefore(row, x);
+					int end = getFirstEndPointAfter(row, x);
+					
+					// If there's nothing left and right, no need to attach a slot
+					if(end - start < 2) continue;
+					
+					attachedSlots[y - startPoint] = internSlot(new SimpleSlot(row, start, end));
+					
+				}
+				
+				addSlot(new ComplexSlot(mainSlot, attachedSlots), new Position(x, startPoint, Position.VERTICAL), lineSlots);
+				
+			}
+			
+		}
+		
+	}
+	
+	// Brings the slots up to date with the given board, only recomputing the lines that changed
+	public void update(BoardSnapshot board) {
+		
+		PackedBoard tiles = board.getTiles();
+		
+		boolean[] dirtyRows = new boolean[board.getHeight()];
+		boolean[] dirtyColumns = new boolean[board.getWidth()];
+		
+		if(this.board == null) {
+			
+			for(int y = 0; y < dirtyRows.length; ++y)
+				rowSlots.add(new ArrayList<LineSlot>());
+			
+			for(int x = 0; x < dirtyColumns.length; ++x)
+				columnSlots.add(new ArrayList<LineSlot>());
+			
+			rows = new Tile[dirtyRows.length][dirtyColumns.length];
+			columns = new Tile[dirtyColumns.length][dirtyRows.length];
+			
+			Arrays.fill(dirtyRows, true);
+			Arrays.fill(dirtyColumns, true);
+			
+		} else {
+			
+			if(board.getWidth() != this.board.getWidth() || board.getHeight() != this.board.getHeight())
+				throw new IllegalArgumentException("Board must be the same size as the last one.");
+			
+			// Snapshots of the same board know which lines changed since the last one; any
+			// other board is gone through in full
+			if(!tiles.findChangedLines(this.board.getTiles(), dirtyRows, dirtyColumns)) {
+				
+				Arrays.fill(dirtyRows, true);
+				Arrays.fill(dirtyColumns, true);
+				
+			}
+			
+		}
+		
+		// Release every changed line before recomputing any, so that slots which are still
+		// on the board are found again rather than rebuilt
+		for(int y = 0; y < dirtyRows.length; ++y)
+			if(dirtyRows[y]) releaseLine(rowSlots.get(y));
+		
+		for(int x = 0; x < dirtyColumns.length; ++x)
+			if(dirtyColumns[x]) releaseLine(columnSlots.get(x));
+		
+		// Every line with a changed square is dirty, so the clean lines are still up to date
+		for(int y = 0; y < dirtyRows.length; ++y)
+			if(dirtyRows[y]) tiles.getRow(y, rows[y]);
+		
+		for(int x = 0; x < dirtyColumns.length; ++x)
+			if(dirtyColumns[x]) tiles.getColumn(x, columns[x]);
+		
+		for(int y = 0; y < dirtyRows.length; ++y)
+			if(dirtyRows[y]) computeRowSlots(tiles, y, rowSlots.get(y));
+		
+		for(int x = 0; x < dirtyColumns.length; ++x)
+			if(dirtyColumns[x]) computeColumnSlots(tiles, x, columnSlots.get(x));
+		
+		dropRetiredSlots();
+		this.board = board;
+		
+	}
+	
+}
@@ -0,0 +1,146 @@
+package com.daretodebug.xwords;
+
+import java.util.*;
+
+// An unchanging copy of a board that moves can be found and scored against from any thread
+public final class BoardSnapshot implements BoardModel {
+	
+	private final BoardModel source;
+	private final PackedBoard tiles;
+	private final BoardTileData[][] tileData;
+	private final int bonusTileCount;
+	private final int bonus;
+	
+	// Moves using at least bonusTileCount tiles score the bonus on top; zero turns it off
+	public BoardSnapshot(BoardModelPopulator populator, Tile[][] columns, int bonusTileCount, int bonus) {
+		
+		int width = columns.length;
+		if(width < 2) throw new IllegalArgumentException("Width must be at least two.");
+		
+		int height = columns[0].length;
+		if(height < 2) throw new IllegalArgumentException("Height must be at least two.");
+		
+		this.source = null;
+		this.bonusTileCount = bonusTileCount;
+		this.bonus = bonus;
+		
+		this.tileData = new BoardTileData[width][];
+		
+		for(int x = 0; x < width; ++x) {
+			
+			if(columns[x].length != height) throw new IllegalArgumentException("All columns must be the same height.");
+			
+			tileData[x] = new BoardTileData[height];
+			
+			for(int y = 0; y < height; ++y)
+				tileData[x][y] = populator.getDataAt(x, y);
+			
+		}
+		
+		tiles = new PackedBoard(columns, populator.getStartingIntersectionPoints()).snapshot();
+		
+	}
+	
+	// The tiles must be a snapshot, and the tile data must not be changed afterwards
+	BoardSnapshot(BoardModel source, PackedBoard tiles, BoardTileData[][] tileData, int bonusTileCount, int bonus) {
+		
+		this.source = source;
+		this.tiles = tiles;
+		this.tileData = tileData;
+		this.bonusTileCount = bonusTileCount;
+		this.bonus = bonus;
+		
+	}
+	
+	// The board this snapshot was taken of, if any
+	public BoardModel getSource() {
+		return source;
+	}
+	
+	PackedBoard getTiles() {
+		return tiles;
+	}
+	
+	// Nothing about a snapshot ever changes, so there is nothing to listen for
+	@Override
+	public void addBoardModelListener(BoardModelListener listener) {}
+	
+	@Override
+	public void removeBoardModelListener(BoardModelListener listener) {}
+	
+	@Override
+	public int getWidth() {
+		return tiles.getWidth();
+	}
+	
+	@Override
+	public int getHeight() {
+		return tiles.getHeight();
+	}
+	
+	@Override
+	public Tile getTileOverlayAt(int x, int y) {
+		return null;
+	}
+	
+	@Override
+	public BoardTileData getTileDataAt(int x, int y) {
+		return tileData[x][y];
+	}
+	
+	@Override
+	public Tile getTileAt(int x, int y) {
+		return tiles.getTile(x, y);
+	}
+	
+	@Override
+	public void setTileAt(int x, int y, Tile tile) {
+		throw new UnsupportedOperationException("Board snapshots cannot be changed.");
+	}
+	
+	@Override
+	public void playMove(Move move) {
+		throw new UnsupportedOperationException("Board snapshots cannot be changed.");
+	}
+	
+	@Override
+	public void overlayMove(Move move) {
+		throw new UnsupportedOperationException("Board snapshots cannot be changed.");
+	}
+	
+	@Override
+	public int addBonus(int score, BoardModel.UnpositionedMove move, BoardModel.Position position) {
+		return score + getBonus(move.getTilesUsed(), position);
+	}
+	
+	// Snapshots are equal if they were taken of the same board, or none, and hold the same tiles
+	@Override
+	public boolean equals(Object o) {
+		
+		if(this == o) return true;
+		if(!(o instanceof BoardSnapshot)) return false;
+		
+		BoardSnapshot b = (BoardSnapshot) o;
+		
+		if(source != b.source || bonusTileCount != b.bonusTileCount || bonus != b.bonus) return false;
+		if(!tiles.hasSameTiles(b.tiles)) return false;
+		
+		for(int x = 0; x < tileData.length; ++x)
+			if(!Arrays.equals(tileData[x], b.tileData[x])) return false;
+		
+		return true;
+		
+	}
+	
+	@Override
+	public int hashCode() {
+		return getWidth() * 31 + tiles.hashTiles();
+	}
+	
+	// What addBonus adds to a move using the given number of tiles at the position.  Searches
+	// score bonuses with this alone, so it is the only source of them.
+	public int getBonus(int tilesUsed, BoardModel.Position position) {
+		return (bonusTileCount > 0 && tilesUsed >= bonusTileCount) ? bonus : 0;
+	}
+	
+}
@@ -0,0 +1,537 @@
+package com.daretodebug.xwords;
+
+import java.util.*;
+
+// Roaring-style bitmap: the bits are split into 65536-bit chunks, and each chunk is stored
+// as a sorted array, a list of runs or a plain bitmap, whichever is smallest
+final class CompactWordBitmap extends WordBitmap {
+	
+	private static final int CHUNK_BITS = 16;
+	private static final int CHUNK_LONGS = 1 << (CHUNK_BITS - 6);
+	private static final int CONTAINER_OVERHEAD = 24;
+	
+	private final Container[] chunks;
+	private final int size;
+	private final int cardinality;
+	
+	private CompactWordBitmap(Container[] chunks, int size, int cardinality) {
+		
+		this.chunks = chunks;
+		this.size = size;
+		this.cardinality = cardinality;
+		
+	}
+	
+	public static CompactWordBitmap of(long[] words, int size) {
+		
+		Container[] chunks = new Container[getChunkCount(size)];
+		int cardinality = 0;
+		
+		for(int chunk = 0; chunk < chunks.length; ++chunk) {
+			
+			int offset = chunk * CHUNK_LONGS;
+			int length = Math.min(CHUNK_LONGS, words.length - offset);
+			
+			int chunkCardinality = getCardinality(words, offset, length);
+			if(chunkCardinality == 0) continue;
+			
+			int runs = getRunCount(words, offset, length);
+			int arraySize = chunkCardinality * 2;
+			int runSize = runs * 4;
+			int bitmapSize = length * 8;
+			
+			if(arraySize <= runSize && arraySize < bitmapSize)
+				chunks[chunk] = ArrayContainer.of(words, offset, length, chunkCardinality);
+			
+			else if(runSize < bitmapSize)
+				chunks[chunk] = RunContainer.of(words, offset, length, runs);
+			
+			else chunks[chunk] = new BitmapContainer(Arrays.copyOfRange(words, offset, offset + length));
+			
+			cardinality += chunkCardinality;
+			
+		}
+		
+		return new CompactWordBitmap(chunks, size, cardinality);
+		
+	}
+	
+	public static long getCompactSize(long[] words, int size) {
+		
+		long compactSize = 16 + getChunkCount(size) * 8L;
+		
+		for(int offset = 0; offset < words.length; offset += CHUNK_LONGS) {
+			
+			int length = Math.min(CHUNK_LONGS, words.length - offset);
+			
+			int cardinality = getCardinality(words, offset, length);
+			if(cardinality == 0) continue;
+			
+			int runs = getRunCount(words, offset, length);
+			compactSize += CONTAINER_OVERHEAD + Math.min(Math.min(cardinality * 2, runs * 4), length * 8);
+			
+		}
+		
+		return compactSize;
+		
+	}
+	
+	private static int getChunkCount(int size) {
+		return (getLongCount(size) + CHUNK_LONGS - 1) / CHUNK_LONGS;
+	}
+	
+	private static int getCardinality(long[] words, int offset, int length) {
+		
+		int cardinality = 0;
+		
+		for(int i = offset; i < offset + length; ++i)
+			cardinality += Long.bitCount(words[i]);
+		
+		return cardinality;
+		
+	}
+	
+	private static int getRunCount(long[] words, int offset, int length) {
+		
+		int runs = 0;
+		long carry = 0;
+		
+		for(int i = offset; i < offset + length; ++i) {
+			
+			long word = words[i];
+			
+			// Count bits that are set while the bit before them is not
+			runs += Long.bitCount(word & ~((word << 1) | carry));
+			carry = word >>> 63;
+			
+		}
+		
+		return runs;
+		
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	@Override
+	public int cardinality() {
+		return cardinality;
+	}
+	
+	@Override
+	public boolean get(int index) {
+		
+		Container container = chunks[index >>> CHUNK_BITS];
+		return container != null && container.contains(index & 0xFFFF);
+		
+	}
+	
+	@Override
+	public int nextSetBit(int fromIndex) {
+		
+		if(fromIndex >= size) return -1;
+		
+		for(int chunk = fromIndex >>> CHUNK_BITS; chunk < chunks.length; ++chunk) {
+			
+			Container container = chunks[chunk];
+			
+			if(container != null) {
+				
+				int low = (chunk == fromIndex >>> CHUNK_BITS) ? fromIndex & 0xFFFF : 0;
+				int next = container.nextSetBit(low);
+				
+				if(next >= 0) return (chunk << CHUNK_BITS) | next;
+				
+			}
+			
+		}
+		
+		return -1;
+		
+	}
+	
+	@Override
+	public void andInto(long[] words) {
+		
+		int offset = 0;
+		
+		for(int chunk = 0; chunk < chunks.length && offset < words.length; ++chunk) {
+			
+			int length = Math.min(CHUNK_LONGS, words.length - offset);
+			
+			Container container = chunks[chunk];
+			
+			if(container == null) Arrays.fill(words, offset, offset + length, 0L);
+			else container.andInto(words, offset, length);
+			
+			offset += length;
+			
+		}
+		
+		Arrays.fill(words, offset, words.length, 0L);
+		
+	}
+	
+	@Override
+	public void orInto(long[] words) {
+		
+		if(words.length < getLongCount(size)) {
+			
+			// Only happens for mismatched tables; not worth a fast path
+			for(int index = nextSetBit(0); index >= 0 && (index >>> 6) < words.length; index = nextSetBit(index + 1))
+				words[index >>> 6] |= 1L << index;
+			
+			return;
+			
+		}
+		
+		for(int chunk = 0; chunk < chunks.length; ++chunk) {
+			
+			Container container = chunks[chunk];
+			if(container != null) container.orInto(words, chunk * CHUNK_LONGS);
+			
+		}
+		
+	}
+	
+	@Override
+	public void copyInto(long[] words) {
+		
+		Arrays.fill(words, 0L);
+		orInto(words);
+		
+	}
+	
+	@Override
+	public long getSizeInBytes() {
+		
+		long sizeInBytes = 16 + chunks.length * 8L;
+		
+		for(Container container : chunks)
+			if(container != null) sizeInBytes += CONTAINER_OVERHEAD + container.getSizeInBytes();
+		
+		return sizeInBytes;
+		
+	}
+	
+	private static abstract class Container {
+		
+		public abstract boolean contains(int low);
+		public abstract int nextSetBit(int fromLow);
+		public abstract void andInto(long[] words, int offset, int length);
+		public abstract void orInto(long[] words, int offset);
+		public abstract int getSizeInBytes();
+		
+	}
+	
+	private static final class ArrayContainer extends Container {
+		
+		private final char[] values;
+		
+		private ArrayContainer(char[] values) {
+			this.values = values;
+		}
+		
+		public static ArrayContainer of(long[] words, int offset, int length, int cardinality) {
+			
+			char[] values = new char[cardinality];
+			int count = 0;
+			
+			for(int i = 0; i < length; ++i) {
+				
+				long word = words[offset + i];
+				
+				while(word != 0) {
+					
+					values[count++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+					
+				}
+				
+			}
+			
+			return new ArrayContainer(values);
+			
+		}
+		
+		@Override
+		public boolean contains(int low) {
+			return Arrays.binarySearch(values, (char) low) >= 0;
+		}
+		
+		@Override
+		public int nextSetBit(int fromLow) {
+			
+			int index = Arrays.binarySearch(values, (char) fromLow);
+			if(index < 0) index = -index - 1;
+			
+			return (index < values.length) ? values[index] : -1;
+			
+		}
+		
+		@Override
+		public void andInto(long[] words, int offset, int length) {
+			
+			int next = 0;
+			int index = 0;
+			
+			while(index < values.length) {
+				
+				int word = values[index] >>> 6;
+				long mask = 0;
+				
+				do mask |= 1L << values[index++];
+				while(index < values.length && (values[index] >>> 6) == word);
+				
+				while(next < word)
+					words[offset + next++] = 0L;
+				
+				words[offset + word] &= mask;
+				++next;
+				
+			}
+			
+			Arrays.fill(words, offset + next, offset + length, 0L);
+			
+		}
+		
+		@Override
+		public void orInto(long[] words, int offset) {
+			
+			for(char value : values)
+				words[offset + (value >>> 6)] |= 1L << value;
+			
+		}
+		
+		@Override
+		public int getSizeInBytes() {
+			return values.length * 2;
+		}
+		
+	}
+	
+	private static final class RunContainer extends Container {
+		
+		// Inclusive bounds of each run
+		private final char[] starts;
+		private final char[] ends;
+		
+		private RunContainer(char[] starts, char[] ends) {
+			
+			this.starts = starts;
+			this.ends = ends;
+			
+		}
+		
+		public static RunContainer of(long[] words, int offset, int length, int runs) {
+			
+			char[] starts = new char[runs];
+			char[] ends = new char[runs];
+			
+			int count = 0;
+			int bits = length << 6;
+			int bit = 0;
+			
+			while(bit < bits) {
+				
+				bit = nextBit(words, offset, length, bit, true);
+				if(bit < 0) break;
+				
+				starts[count] = (char) bit;
+				
+				int end = nextBit(words, offset, length, bit, false);
+				if(end < 0) end = bits;
+				
+				ends[count++] = (char) (end - 1);
+				bit = end;
+				
+			}
+			
+			return new RunContainer(starts, ends);
+			
+		}
+		
+		private static int nextBit(long[] words, int offset, int length, int from, boolean set) {
+			
+			int i = from >>> 6;
+			if(i >= length) return -1;
+			
+			long word = (set ? words[offset + i] : ~words[offset + i]) & (~0L << from);
+			
+			for(;;) {
+				
+				if(word != 0) return (i << 6) + Long.numberOfTrailingZeros(word);
+				if(++i >= length) return -1;
+				
+				word = set ? words[offset + i] : ~words[offset + i];
+				
+			}
+			
+		}
+		
+		private int findRun(int low) {
+			
+			// Index of the last run starting at or before low
+			int index = Arrays.binarySearch(starts, (char) low);
+			return (index >= 0) ? index : -index - 2;
+			
+		}
+		
+		@Override
+		public boolean contains(int low) {
+			
+			int run = findRun(low);
+			return run >= 0 && low <= ends[run];
+			
+		}
+		
+		@Override
+		public int nextSetBit(int fromLow) {
+			
+			int run = findRun(fromLow);
+			
+			if(run >= 0 && fromLow <= ends[run]) return fromLow;
+			if(++run < starts.length) return starts[run];
+			
+			return -1;
+			
+		}
+		
+		@Override
+		public void andInto(long[] words, int offset, int length) {
+			
+			int next = 0;
+			int current = -1;
+			long mask = 0;
+			
+			for(int run = 0; run < starts.length; ++run) {
+				
+				int start = starts[run];
+				int end = ends[run];
+				int startWord = start >>> 6;
+				int endWord = end >>> 6;
+				
+				if(startWord != current) {
+					
+					if(current >= 0) words[offset + current] &= mask;
+					
+					while(next < startWord)
+						words[offset + next++] = 0L;
+					
+					mask = 0;
+					
+				}
+				
+				long endMask = ~0L >>> (63 - (end & 63));
+				
+				if(startWord == endWord) mask |= (~0L << start) & endMask;
+				
+				else {
+					
+					// Words entirely inside the run are left as they are
+					words[offset + startWord] &= mask | (~0L << start);
+					mask = endMask;
+					
+				}
+				
+				current = endWord;
+				next = endWord + 1;
+				
+			}
+			
+			if(current >= 0) words[offset + current] &= mask;
+			Arrays.fill(words, offset + next, offset + length, 0L);
+			
+		}
+		
+		@Override
+		public void orInto(long[] words, int offset) {
+			
+			for(int run = 0; run < starts.length; ++run) {
+				
+				int start = starts[run];
+				int end = ends[run];
+				int startWord = start >>> 6;
+				int endWord = end >>> 6;
+				
+				long endMask = ~0L >>> (63 - (end & 63));
+				
+				if(startWord == endWord) words[offset + startWord] |= (~0L << start) & endMask;
+				
+				else {
+					
+					words[offset + startWord] |= ~0L << start;
+					Arrays.fill(words, offset + startWord + 1, offset + endWord, ~0L);
+					words[offset + endWord] |= endMask;
+					
+				}
+				
+			}
+			
+		}
+		
+		@Override
+		public int getSizeInBytes() {
+			return starts.length * 4;
+		}
+		
+	}
+	
+	private static final class BitmapContainer extends Container {
+		
+		private final long[] words;
+		
+		public BitmapContainer(long[] words) {
+			this.words = words;
+		}
+		
+		@Override
+		public boolean contains(int low) {
+			return (words[low >>> 6] & (1L << low)) != 0;
+		}
+		
+		@Override
+		public int nextSetBit(int fromLow) {
+			
+			int i = fromLow >>> 6;
+			if(i >= words.length) return -1;
+			
+			long word = words[i] & (~0L << fromLow);
+			
+			for(;;) {
+				
+				if(word != 0) return (i << 6) + Long.numberOfTrailingZeros(word);
+				if(++i >= words.length) return -1;
+				
+				word = words[i];
+				
+			}
+			
+		}
+		
+		@Override
+		public void andInto(long[] words, int offset, int length) {
+			
+			for(int i = 0; i < length; ++i)
+				words[offset + i] &= this.words[i];
+			
+		}
+		
+		@Override
+		public void orInto(long[] words, int offset) {
+			
+			for(int i = 0; i < this.words.length; ++i)
+				words[offset + i] |= this.words[i];
+			
+		}
+		
+		@Override
+		public int getSizeInBytes() {
+			return words.length * 8;
+		}
+		
+	}
+	
+}
@@ -4,8 +4,19 @@ import java.awt.*;
 
 public final class DefaultBoard extends DefaultBoardModel {
 	
+	public static final int BONUS_TILE_COUNT = 7;
+	public static final int BONUS = 50;
+	
 	public DefaultBoard(WordDictionary dictionary) {
-		super(dictionary, 15, 15, Populator.INSTANCE);
+		super(dictionary, 15, 15, Populator.INSTANCE, BONUS_TILE_COUNT, BONUS);
+	}
+	
+	// A standard board holding the given tiles, laid out as columns, without any Swing models
+	public static BoardSnapshot createSnapshot(Tile[][] columns) {
+		
+		if(columns.length != 15) throw new IllegalArgumentException("Standard boards are 15 columns wide.");
+		return new BoardSnapshot(Populator.INSTANCE, columns, BONUS_TILE_COUNT, BONUS);
+		
 	}
 	
 	private static class Populator implements BoardModelPopulator {
@@ -170,12 +181,4 @@ public final class DefaultBoard extends DefaultBoardModel {
 		
 	}
 	
-	@Override
-	public int addBonus(int score, BoardModel.UnpositionedMove move, BoardModel.Position position) {
-		
-		if(move.getTilesUsed() >= 7) score += 50;
-		return score;
-		
-	}
-	
 }
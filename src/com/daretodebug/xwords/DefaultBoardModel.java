@@ -1,6 +1,9 @@
 package com.daretodebug.xwords;
 
+import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import javax.swing.*;
 import javax.swing.text.*;
 import javax.swing.table.*;
@@ -8,12 +11,10 @@ import javax.swing.table.*;
 public class DefaultBoardModel extends AbstractBoardModel {
 	
 	private final WorkerTask workerTask;
-	private final Tile[][] columns;
-	private final Tile[][] rows;
+	private final Object dataLock = new Object();
+	private final PackedBoard tiles;
 	private final Tile[][] overlay;
 	private final BoardTileData[][] tileData;
-	private final boolean[][] intersectionPoints;
-	private final TileCoords[] startingIntersectionPoints;
 	
 	private Object boardRevision;
 	private WordDictionary dictionary;
@@ -23,8 +24,18 @@ public class DefaultBoardModel extends AbstractBoardModel {
 	private final ProgressBar progressBar;
 	
 	private final MoveModel moveModel;
+	private volatile ForkJoinPool searchPool;
+	private int moveLimit;
+	
+	private final int bonusTileCount;
+	private final int bonus;
 	
 	public DefaultBoardModel(WordDictionary dictionary, int width, int height, BoardModelPopulator populator) {
+		this(dictionary, width, height, populator, 0, 0);
+	}
+	
+	// Moves using at least bonusTileCount tiles score the bonus on top; zero turns it off
+	public DefaultBoardModel(WordDictionary dictionary, int width, int height, BoardModelPopulator populator, int bonusTileCount, int bonus) {
 		
 		if(width < 2) throw new IllegalArgumentException("Width must be at least two.");
 		if(height < 2) throw new IllegalArgumentException("Height must be at least two.");
@@ -32,17 +43,14 @@ public class DefaultBoardModel extends AbstractBoardModel {
 		if(dictionary == null) throw new NullPointerException();
 		this.dictionary = dictionary;
 		
+		this.bonusTileCount = bonusTileCount;
+		this.bonus = bonus;
+		
 		Thread workerThread = new Thread(workerTask = new WorkerTask());
 		workerThread.setDaemon(true);
 		workerThread.setPriority(Thread.MIN_PRIORITY);
 		
-		columns = new Tile[width][];
-		for(int i = 0; i < columns.length; ++i)
-			columns[i] = new Tile[height];
-		
-		rows = new Tile[height][];
-		for(int i = 0; i < rows.length; ++i)
-			rows[i] = new Tile[width];
+		tiles = new PackedBoard(width, height, populator.getStartingIntersectionPoints());
 		
 		overlay = new Tile[width][];
 		for(int i = 0; i < overlay.length; ++i)
@@ -58,16 +66,6 @@ public class DefaultBoardModel extends AbstractBoardModel {
 			
 		}
 		
-		intersectionPoints = new boolean[width][];
-		for(int i = 0; i < intersectionPoints.length; ++i)
-			intersectionPoints[i] = new boolean[height];
-		
-		TileCoords[] startingIntersectionPoints = populator.getStartingIntersectionPoints();
-		this.startingIntersectionPoints = new TileCoords[startingIntersectionPoints.length];
-		System.arraycopy(startingIntersectionPoints, 0, this.startingIntersectionPoints, 0, startingIntersectionPoints.length);
-		
-		setStartingIntersectionPoints();
-		
 		boardRevision = 0;
 		
 		handModel = new PlainDocument() {
@@ -148,96 +146,14 @@ public class DefaultBoardModel extends AbstractBoardModel {
 		
 	}
 	
-	private static <T> T intern(T item, Hashtable<T, T> oldPool, Hashtable<T, T> newPool) {
-		
-		T intern = newPool.get(item);
-		if(intern != null) return intern;
-		
-		intern = oldPool.get(item);
-		if(intern != null) {
-			
-			newPool.put(intern, intern);
-			return intern;
-			
-		}
-		
-		newPool.put(item, item);
-		return item;
-		
-	}
-	
-	private static <T> AbstractMap.SimpleEntry<T, ArrayList<Position>> internList(T item, Hashtable<T, AbstractMap.SimpleEntry<T, ArrayList<Position>>> oldPool, Hashtable<T, AbstractMap.SimpleEntry<T, ArrayList<Position>>> newPool) {
-		
-		AbstractMap.SimpleEntry<T, ArrayList<Position>> intern = newPool.get(item);
-		if(intern != null) return intern;
-		
-		intern = oldPool.get(item);
-		if(intern != null) {
-			
-			intern.getValue().clear();
-			newPool.put(intern.getKey(), intern);
-			return intern;
-			
-		}
-		
-		intern = new AbstractMap.SimpleEntry<T, ArrayList<Position>>(item, new ArrayList<Position>());
-		newPool.put(item, intern);
-		return intern;
-		
-	}
-	
-	private static int getFirstStartPointAtOrBefore(Tile[] row, int index) {
-		
-		--index;
-		for(; index >= 0; --index)
-			if(row[index] == null) break;
-		
-		return ++index;
-		
-	}
-	
-	private static int getFirstEndPointAfter(Tile[] row, int index) {
-		
-		++index;
-		for(; index < row.length; ++index)
-			if(row[index] == null) break;
-		
-		return index;
-		
-	}
-	
-	private static boolean isStartPoint(Tile[] row, int index) {
-		
-		if(index == 0 || row[index - 1] == null) return true;
-		
-		return false;
-		
-	}
-	
-	private static boolean isEndPoint(Tile[] row, int index) {
-		
-		if(index == row.length || row[index] == null) return true;
-		
-		return false;
-		
-	}
-	
-	private void setStartingIntersectionPoints() {
-		
-		for(TileCoords coords : startingIntersectionPoints) {
-			intersectionPoints[coords.x][coords.y] = true;
-		}
-		
-	}
-	
 	@Override
 	public int getWidth() {
-		return columns.length;
+		return tiles.getWidth();
 	}
 
 	@Override
 	public int getHeight() {
-		return rows.length;
+		return tiles.getHeight();
 	}
 
 	@Override
@@ -252,7 +168,7 @@ public class DefaultBoardModel extends AbstractBoardModel {
 	
 	@Override
 	public Tile getTileAt(int x, int y) {
-		return columns[x][y];
+		return tiles.getTile(x, y);
 	}
 	
 	public Document getHandModel() {
@@ -271,179 +187,178 @@ public class DefaultBoardModel extends AbstractBoardModel {
 		return dictionary;
 	}
 	
-	public void setDictionary(WordDictionary dictionary) {
+	public ForkJoinPool getSearchPool() {
+		return searchPool;
+	}
+	
+	// Searches are split across the given pool, or run on the board's own worker thread if null
+	public void setSearchPool(ForkJoinPool searchPool) {
+		this.searchPool = searchPool;
+	}
+	
+	public int getMoveLimit() {
+		return moveLimit;
+	}
+	
+	// Only the moveLimit highest scoring moves are listed, or every move if zero
+	public void setMoveLimit(int moveLimit) {
 		
-		if(dictionary == null) throw new NullPointerException();
-		if(dictionary == this.dictionary) return;
+		if(moveLimit < 0) throw new IllegalArgumentException("Move limit cannot be negative.");
+		if(moveLimit == this.moveLimit) return;
+		
+		synchronized(dataLock) {
+			this.moveLimit = moveLimit;
+		}
 		
-		this.dictionary = dictionary;
 		workerTask.doSearch(this);
 		
 	}
 	
-	private boolean isIntersectionPoint(int x, int y) {
+	// Searches the current board and hand on the calling thread, giving up on the slots left
+	// once the timeout has passed; a moveLimit of zero keeps every move found. Safe to call from
+	// any thread, and leaves the move list shown by the board alone
+	public MoveList findMoves(int moveLimit, long timeout, TimeUnit unit) {
+		
+		if(moveLimit < 0) throw new IllegalArgumentException("Move limit cannot be negative.");
 		
-		// Check tile left
-		if(x > 0 && columns[x - 1][y] != null) return true;
+		long startTime = System.nanoTime();
 		
-		// Check tile right
-		if(x + 1 < columns.length && columns[x + 1][y] != null) return true;
+		BoardSnapshot board;
+		Hand hand;
+		WordDictionary dictionary;
 		
-		// Check tile above
-		if(y > 0 && rows[y - 1][x] != null) return true;
+		synchronized(dataLock) {
+			
+			board = getSnapshot();
+			hand = this.hand;
+			dictionary = this.dictionary;
+			
+		}
 		
-		// Check tile below
-		if(y + 1 < rows.length && rows[y + 1][x] != null) return true;
+		if(hand == null) return new MoveList(System.nanoTime() - startTime);
 		
-		return false;
+		long remaining = unit.toNanos(timeout) - (System.nanoTime() - startTime);
+		return new MoveGenerator(searchPool).search(board, hand, dictionary, moveLimit, Math.max(remaining, 0), TimeUnit.NANOSECONDS);
 		
 	}
 	
-	// Only to be called inside dataLock
-	private boolean internalSetTileAt(int x, int y, Tile tile) {
+	// The board as it is now, for searching with a MoveGenerator; moves found on it can be
+	// played on this board. Safe to call from any thread
+	public BoardSnapshot getSnapshot() {
 		
-		Tile oldTile = columns[x][y];
-		if(oldTile == tile) return false;
+		synchronized(dataLock) {
+			return new BoardSnapshot(this, tiles.snapshot(), tileData, bonusTileCount, bonus);
+		}
 		
-		columns[x] = Arrays.copyOf(columns[x], rows.length);
-		rows[y] = Arrays.copyOf(rows[y], columns.length);
+	}
+	
+	private boolean isOwnMove(Move move) {
 		
-		columns[x][y] = tile;
-		rows[y][x] = tile;
+		BoardModel board = move.getBoard();
+		return board == this || (board instanceof BoardSnapshot && ((BoardSnapshot) board).getSource() == this);
 		
-		intersectionPoints[x] = Arrays.copyOf(intersectionPoints[x], columns.length);
+	}
+	
+	public void setDictionary(WordDictionary dictionary) {
 		
-		// If tile is now empty, check intersection points
-		if(tile == null) {
-			
-			// Check tile left
-			if(x > 0) {
-				
-				int left = x - 1;
-				intersectionPoints[left] = Arrays.copyOf(intersectionPoints[left], columns.length);
-				intersectionPoints[left][y] = isIntersectionPoint(left, y);
-				
-			}
-			
-			// Check tile right
-			int right = x + 1;
-			if(right < intersectionPoints.length) {
-				
-				intersectionPoints[right] = Arrays.copyOf(intersectionPoints[right], columns.length);
-				intersectionPoints[right][y] = isIntersectionPoint(right, y);
-				
-			}
-			
-			// Check tile above
-			if(y > 0) intersectionPoints[x][y - 1] = isIntersectionPoint(x, y - 1);
-			
-			// Check tile below
-			if(y + 1 < intersectionPoints.length) intersectionPoints[x][y + 1] = isIntersectionPoint(x, y + 1);
-			
-			setStartingIntersectionPoints();
-			
-		}
+		if(dictionary == null) throw new NullPointerException();
+		if(dictionary == this.dictionary) return;
 		
-		// If the tile was empty but now is not
-		else if(oldTile == null) {
-			
-			// Check tile left
-			if(x > 0) {
-				
-				int left = x - 1;
-				intersectionPoints[left] = Arrays.copyOf(intersectionPoints[left], columns.length);
-				intersectionPoints[left][y] = true;
-				
-			}
-			
-			// Check tile right
-			int right = x + 1;
-			if(right < intersectionPoints.length) {
-				
-				intersectionPoints[right] = Arrays.copyOf(intersectionPoints[right], columns.length);
-				intersectionPoints[right][y] = true;
-				
-			}
-			
-			// Check tile above
-			if(y > 0) intersectionPoints[x][y - 1] = true;
-			
-			// Check tile below
-			if(y + 1 < intersectionPoints.length) intersectionPoints[x][y + 1] = true;
-			
+		synchronized(dataLock) {
+			this.dictionary = dictionary;
 		}
 		
-		fireTileChanged(x, y);
-		return true;
+		workerTask.doSearch(this);
 		
 	}
 	
+	// Only to be called inside dataLock; listeners are told of the change once it is released
+	private boolean internalSetTileAt(int x, int y, Tile tile) {
+		return tiles.setTile(x, y, tile);
+	}
+	
 	@Override
 	public void setTileAt(int x, int y, Tile tile) {
 		
-		if(internalSetTileAt(x, y, tile)) {
+		synchronized(dataLock) {
 			
+			if(!internalSetTileAt(x, y, tile)) return;
 			boardRevision = new int[0];
-			workerTask.doSearch(this);
 			
 		}
 		
+		fireTileChanged(x, y);
+		workerTask.doSearch(this);
+		
 	}
 	
 	@Override
 	public void playMove(Move move) {
 		
-		if(move.getBoard() != this)
+		if(!isOwnMove(move))
 			throw new IllegalArgumentException("This move does not correspond to this board.");
 		
 		boolean search = false;
 		
 		UnpositionedMove unpos = move.getUnpositionedMove();
 		Position pos = move.getPosition();
+		boolean[] changed = new boolean[unpos.getLength()];
 		
-		if(pos.orientation == Position.HORIZONTAL) {
+		synchronized(dataLock) {
 			
-			int y = pos.y;
-			
-			for(int i = 0; i < unpos.getLength(); ++i) {
+			if(pos.orientation == Position.HORIZONTAL) {
 				
-				Tile tile = unpos.getTile(i);
-				if(tile == null) continue;
+				int y = pos.y;
 				
-				int x = pos.x + i;
-				search |= internalSetTileAt(x, y, tile);
+				for(int i = 0; i < unpos.getLength(); ++i) {
+					
+					Tile tile = unpos.getTile(i);
+					if(tile == null) continue;
+					
+					int x = pos.x + i;
+					changed[i] = internalSetTileAt(x, y, tile);
+					search |= changed[i];
+					
+				}
 				
-			}
-			
-		} else { // VERTICAL
-			
-			int x = pos.x;
-			
-			for(int i = 0; i < unpos.getLength(); ++i) {
+			} else { // VERTICAL
 				
-				Tile tile = unpos.getTile(i);
-				if(tile == null) continue;
+				int x = pos.x;
 				
-				int y = pos.y + i;
-				search |= internalSetTileAt(x, y, tile);
+				for(int i = 0; i < unpos.getLength(); ++i) {
+					
+					Tile tile = unpos.getTile(i);
+					if(tile == null) continue;
+					
+					int y = pos.y + i;
+					changed[i] = internalSetTileAt(x, y, tile);
+					search |= changed[i];
+					
+				}
 				
 			}
 			
+			if(search) boardRevision = new int[0];
+			
 		}
 		
-		if(search) {
+		for(int i = 0; i < changed.length; ++i) {
 			
-			boardRevision = new int[0];
-			workerTask.doSearch(this);
+			if(!changed[i]) continue;
+			
+			if(pos.orientation == Position.HORIZONTAL) fireTileChanged(pos.x + i, pos.y);
+			else fireTileChanged(pos.x, pos.y + i);
 			
 		}
-
+		
+		if(search) workerTask.doSearch(this);
+		
 	}
 	
 	@Override
 	public void overlayMove(Move move) {
 		
-		if(move != null && move.getBoard() != this)
+		if(move != null && !isOwnMove(move))
 			throw new IllegalArgumentException("This move does not correspond to this board.");
 		
 		for(int x = 0; x < overlay.length; ++x)
@@ -501,7 +416,10 @@ public class DefaultBoardModel extends AbstractBoardModel {
 		
 		if(hand.equals(this.hand)) return;
 		
-		this.hand = hand;
+		synchronized(dataLock) {
+			this.hand = hand;
+		}
+		
 		workerTask.doSearch(this);
 		
 	}
@@ -510,22 +428,29 @@ public class DefaultBoardModel extends AbstractBoardModel {
 		
 		if(hand == null) return;
 		
-		hand = null;
+		synchronized(dataLock) {
+			hand = null;
+		}
+		
 		workerTask.doSearch(this);
 		
 	}
 	
+	// Final because searches take the bonus from the snapshot rather than from here
 	@Override
-	public int addBonus(int score, BoardModel.UnpositionedMove move, BoardModel.Position position) {
+	public final int addBonus(int score, BoardModel.UnpositionedMove move, BoardModel.Position position) {
+		
+		if(bonusTileCount > 0 && move.getTilesUsed() >= bonusTileCount) score += bonus;
 		return score;
+		
 	}
 	
 	public final static class MoveModel extends AbstractTableModel {
 		
 		private static final long serialVersionUID = 1L;
 		
-		private ArrayList<Move> currentStore;
-		private ArrayList<Move> futureStore;
+		private List<Move> currentStore;
+		private List<Move> futureStore;
 		private final Runnable updater;
 		
 		public MoveModel() {
@@ -552,7 +477,7 @@ public class DefaultBoardModel extends AbstractBoardModel {
 			
 		}
 		
-		private void update(ArrayList<Move> moves) {
+		private void update(List<Move> moves) {
 			
 			if(moves == null) throw new NullPointerException();
 			
@@ -620,6 +545,22 @@ public class DefaultBoardModel extends AbstractBoardModel {
 			
 			if(rowIndex < 0 || rowIndex >= currentStore.size()) return null;
 			
+			// Search results give their scores and tiles used without making the move
+			if(currentStore instanceof MoveList && columnIndex != 0) {
+				
+				MoveList moves = (MoveList) currentStore;
+				
+				switch(columnIndex) {
+				
+				case 1: return moves.getScore(rowIndex);
+				case 2: return moves.getTilesUsed(rowIndex);
+					
+				}
+				
+				return null;
+				
+			}
+			
 			Move move = currentStore.get(rowIndex);
 			
 			switch(columnIndex) {
@@ -712,38 +653,26 @@ public class DefaultBoardModel extends AbstractBoardModel {
 	private final static class Search {
 		
 		public final Object boardRevision;
-		public final Tile[][] rows;
-		public final Tile[][] columns;
-		public final boolean[][] intersectionPoints;
+		public final BoardSnapshot board;
 		public final Hand hand;
 		public final WordDictionary dictionary;
+		public final int moveLimit;
+		public final long startTime;
+		public final AtomicBoolean cancelled = new AtomicBoolean();
 		
 		public Search(DefaultBoardModel board) {
 			
-			boardRevision = board.boardRevision;
-			rows = Arrays.copyOf(board.rows, board.rows.length);
-			columns = Arrays.copyOf(board.columns, board.columns.length);
-			intersectionPoints = Arrays.copyOf(board.intersectionPoints, board.intersectionPoints.length);
-			hand = board.hand;
-			dictionary = board.dictionary;
-			
-		}
-		
-		public boolean rowContainsIntersection(int y, int startPoint, int endPoint) {
-			
-			for(int i = startPoint; i < endPoint; ++i)
-				if(intersectionPoints[i][y]) return true;
-			
-			return false;
-			
-		}
-		
-		public boolean columnContainsIntersection(int x, int startPoint, int endPoint) {
-			
-			for(int i = startPoint; i < endPoint; ++i)
-				if(intersectionPoints[x][i]) return true;
+			synchronized(board.dataLock) {
+				
+				boardRevision = board.boardRevision;
+				this.board = board.getSnapshot();
+				hand = board.hand;
+				dictionary = board.dictionary;
+				moveLimit = board.moveLimit;
+				
+			}
 			
-			return false;
+			startTime = System.nanoTime();
 			
 		}
 		
@@ -753,168 +682,31 @@ public class DefaultBoardModel extends AbstractBoardModel {
 		
 		private volatile Search search;
 		
-		private Hashtable<SlotMask, SlotMask> slotMasks;
-		private Hashtable<SimpleSlot, SimpleSlot> simpleSlots;
-		private Hashtable<ComplexSlot, AbstractMap.SimpleEntry<ComplexSlot, ArrayList<Position>>> complexSlots;
+		// Kept up to date with the board of the last search, line by line
+		private final BoardSlots slots = new BoardSlots();
 		
 		public WorkerTask() {}
 		
+		// Only to be called on the event dispatch thread
 		public synchronized void doSearch(DefaultBoardModel board) {
 			
 			board.moveModel.currentStore = new ArrayList<Move>();
 			board.moveModel.fireTableDataChanged();
 			
+			// Stops the search in progress, if any
+			if(this.search != null) this.search.cancelled.set(true);
+			
 			this.search = new Search(board);
 			notifyAll();
 			
 		}
 		
-		private void computeSlots(Search search) {
-			
-			Hashtable<SlotMask, SlotMask> slotMasks = new Hashtable<SlotMask, SlotMask>();
-			Hashtable<SimpleSlot, SimpleSlot> simpleSlots = new Hashtable<SimpleSlot, SimpleSlot>();
-			Hashtable<ComplexSlot, AbstractMap.SimpleEntry<ComplexSlot, ArrayList<Position>>> complexSlots = new Hashtable<ComplexSlot, AbstractMap.SimpleEntry<ComplexSlot, ArrayList<Position>>>();
-			
-			// Go through rows
-			for(int y = 0; y < search.rows.length; ++y) {
-				
-				Tile[] row = search.rows[y];
-				int lastStart = row.length - 2;
-				
-				for(int startPoint = 0; startPoint <= lastStart; ++startPoint) {
-					
-					if(!isStartPoint(row, startPoint)) continue;
-					int lastEnd = startPoint + 2;
-					
-					for(int endPoint = row.length; endPoint >= lastEnd; --endPoint) {
-						
-						if(!isEndPoint(row, endPoint)) continue;
-						
-						if(!search.rowContainsIntersection(y, startPoint, endPoint))
-							break;
-						
-						SimpleSlot mainSlot = SimpleSlot.tryNew(row, startPoint, endPoint);
-						
-						// If we got null, there are no empty spaces, and decreasing the range certainly will not increase that
-						if(mainSlot == null) break;
-						
-						// Intern the slot into the new pool
-						mainSlot = intern(mainSlot, this.simpleSlots, simpleSlots);
-						
-						SimpleSlot[] attachedSlots = new SimpleSlot[mainSlot.getLength()];
-						
-						// Get attached slots
-						for(int x = startPoint; x < endPoint; ++x) {
-							
-							// If we're not placing a tile here, no need to attach a slot
-							if(row[x] != null) continue;
-							
-							// Get associated column
-							Tile[] column = search.columns[x];
-							
-							int start = getFirstStartPointAtOrBefore(column, y);
-							int end = getFirstEndPointAfter(column, y);
-							
-							// If there's nothing above and below, no need to attach a slot
-							if(end - start < 2) continue;
-							
-							attachedSlots[x - startPoint] = intern(new SimpleSlot(column, start, end), this.simpleSlots, simpleSlots);
-							
-						}
-						
-						// Intern complex slot and add this position to its list
-						AbstractMap.SimpleEntry<ComplexSlot, ArrayList<Position>> complexList =
-							internList(new ComplexSlot(mainSlot, attachedSlots), this.complexSlots, complexSlots);
-						
-						complexList.getValue().add(new Position(startPoint, y, Position.HORIZONTAL));
-						
-					}
-					
-				}
-				
-			}
-			
-			// Go through columns
-			for(int x = 0; x < search.columns.length; ++x) {
-				
-				Tile[] column = search.columns[x];
-				int lastStart = column.length - 2;
-				
-				for(int startPoint = 0; startPoint <= lastStart; ++startPoint) {
-					
-					if(!isStartPoint(column, startPoint)) continue;
-					int lastEnd = startPoint + 2;
-					
-					for(int endPoint = column.length; endPoint >= lastEnd; --endPoint) {
-						
-						if(!isEndPoint(column, endPoint)) continue;
-						
-						if(!search.columnContainsIntersection(x, startPoint, endPoint))
-							break;
-						
-						SimpleSlot mainSlot = SimpleSlot.tryNew(column, startPoint, endPoint);
-						
-						// If we got null, there are no empty spaces, and decreasing the range certainly will not increase that
-						if(mainSlot == null) break;
-						
-						// Intern the slot into the new pool
-						mainSlot = intern(mainSlot, this.simpleSlots, simpleSlots);
-						
-						SimpleSlot[] attachedSlots = new SimpleSlot[mainSlot.getLength()];
-						
-						// Get attached slots
-						for(int y = startPoint; y < endPoint; ++y) {
-							
-							// If we're not placing a tile here, no need to attach a slot
-							if(column[y] != null) continue;
-							
-							// Get associated row
-							Tile[] row = search.rows[y];
-							
-							int start = getFirstStartPointAtOrBefore(row, x);
-							int end = getFirstEndPointAfter(row, x);
-							
-							// If there's nothing left and right, no need to attach a slot
-							if(end - start < 2) continue;
-							
-							attachedSlots[y - startPoint] = intern(new SimpleSlot(row, start, end), this.simpleSlots, simpleSlots);
-							
-						}
-						
-						// Intern complex slot and add this position to its list
-						AbstractMap.SimpleEntry<ComplexSlot, ArrayList<Position>> complexList =
-							internList(new ComplexSlot(mainSlot, attachedSlots), this.complexSlots, complexSlots);
-						
-						complexList.getValue().add(new Position(x, startPoint, Position.VERTICAL));
-						
-					}
-					
-				}
-				
-			}
-			
-			// Intern all the slot masks
-			for(SimpleSlot slot : simpleSlots.keySet())
-				slot.internSlotMask(this.slotMasks, slotMasks);
-			
-			this.slotMasks = slotMasks;
-			this.simpleSlots = simpleSlots;
-			this.complexSlots = complexSlots;
-			
-		}
-		
 		@Override
-		@SuppressWarnings("unchecked")
 		public void run() {
 			
-			this.slotMasks = new Hashtable<SlotMask, SlotMask>();
-			this.simpleSlots = new Hashtable<SimpleSlot, SimpleSlot>();
-			this.complexSlots = new Hashtable<ComplexSlot, AbstractMap.SimpleEntry<ComplexSlot, ArrayList<Position>>>();
-			
 			Object boardRevision = null;
 			Search search = null;
 			
-			mainLoop:
 			for(;;) {
 				
 				progressBar.update(false, "");
@@ -959,61 +751,29 @@ public class DefaultBoardModel extends AbstractBoardModel {
 				// If the board's contents were changed, recompute slots
 				if(boardRevision != search.boardRevision) {
 					
-					computeSlots(search);
+					slots.update(search.board);
 					boardRevision = search.boardRevision;
 					
 				}
 				
-				// Figure out moves
-				ArrayList<Move> moves = new ArrayList<Move>();
-				
-				EnumSet<Tile>[][] singleTileMoves = new EnumSet[search.columns.length][];
-				for(int i = 0; i < singleTileMoves.length; ++i) {
-					
-					singleTileMoves[i] = new EnumSet[search.rows.length];
-					
-					for(int j = 0; j < singleTileMoves[i].length; ++j)
-						singleTileMoves[i][j] = EnumSet.noneOf(Tile.class);
-					
-				}
+				MoveGenerator generator = new MoveGenerator(searchPool);
+				List<Move> moves;
 				
-				for(AbstractMap.SimpleEntry<ComplexSlot, ArrayList<Position>> entry : complexSlots.values()) {
-					
-					// If a new search has been assigned
-					if(search != this.search) continue mainLoop;
-					
-					ComplexSlot slot = entry.getKey();
-					ArrayList<Position> positions = entry.getValue();
+				try {
+					moves = generator.search(slots, search.hand, search.dictionary, search.moveLimit, search.startTime, -1, search.cancelled);
+				} catch(final UncheckedIOException e) {
 					
-					List<UnpositionedMove> unpositionedMoves = slot.getPlayableMoves(search.dictionary, search.hand);
+					// A damaged dictionary index is only found when a search first reaches the table
+					SwingUtilities.invokeLater(new Runnable() {
+						
+						@Override
+						public void run() {
+							JOptionPane.showMessageDialog(null, "Unable to read the dictionary:\n\n" + e.getCause().getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+						}
+						
+					});
 					
-					for(UnpositionedMove unpositionedMove : unpositionedMoves)
-						if(unpositionedMove.getTilesUsed() == 1) {
-							
-							int firstEmpty = unpositionedMove.getSlot().getMainSlot().getMask().getFirstEmpty();
-							Tile tile = unpositionedMove.getTile(firstEmpty);
-							
-							for(int i = 0; i < positions.size(); ++i) {
-								
-								Position position = positions.get(i);
-								
-								// Check move
-								int x = position.x;
-								int y = position.y;
-								
-								if(position.orientation == Position.HORIZONTAL)
-									x += firstEmpty;
-								else // VERTICAL
-									y += firstEmpty;
-								
-								if(singleTileMoves[x][y].add(tile))
-									moves.add(unpositionedMove.position(DefaultBoardModel.this, position));
-								
-							}
-							
-						} else
-							for(int i = 0; i < positions.size(); ++i)
-								moves.add(unpositionedMove.position(DefaultBoardModel.this, positions.get(i)));
+					moves = new ArrayList<Move>();
 					
 				}
 				
@@ -0,0 +1,126 @@
+package com.daretodebug.xwords;
+
+import java.util.*;
+
+final class DenseWordBitmap extends WordBitmap {
+	
+	final long[] words;
+	private final int size;
+	
+	public DenseWordBitmap(int size) {
+		
+		this.words = new long[getLongCount(size)];
+		this.size = size;
+		
+	}
+	
+	public DenseWordBitmap(long[] words, int size) {
+		
+		if(words.length != getLongCount(size))
+			throw new IllegalArgumentException("Word array length does not match the given size.");
+		
+		this.words = words;
+		this.size = size;
+		
+	}
+	
+	public DenseWordBitmap(WordBitmap bitmap) {
+		
+		this(bitmap.size());
+		bitmap.copyInto(words);
+		
+	}
+	
+	public DenseWordBitmap(BitSet bits, int size) {
+		
+		this(Arrays.copyOf(bits.toLongArray(), getLongCount(size)), size);
+		
+		// Drop anything past the end of the table
+		int tail = size & 63;
+		if(tail != 0) words[words.length - 1] &= (1L << tail) - 1;
+		
+	}
+	
+	public static long getDenseSize(int size) {
+		return 16 + getLongCount(size) * 8L;
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	@Override
+	public int cardinality() {
+		
+		int cardinality = 0;
+		
+		for(long word : words)
+			cardinality += Long.bitCount(word);
+		
+		return cardinality;
+		
+	}
+	
+	@Override
+	public boolean get(int index) {
+		return (words[index >>> 6] & (1L << index)) != 0;
+	}
+	
+	@Override
+	public int nextSetBit(int fromIndex) {
+		
+		if(fromIndex >= size) return -1;
+		
+		int wordIndex = fromIndex >>> 6;
+		long word = words[wordIndex] & (~0L << fromIndex);
+		
+		for(;;) {
+			
+			if(word != 0) return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+			if(++wordIndex >= words.length) return -1;
+			
+			word = words[wordIndex];
+			
+		}
+		
+	}
+	
+	@Override
+	public void andInto(long[] words) {
+		
+		int length = Math.min(words.length, this.words.length);
+		
+		for(int i = 0; i < length; ++i)
+			words[i] &= this.words[i];
+		
+		Arrays.fill(words, length, words.length, 0L);
+		
+	}
+	
+	@Override
+	public void orInto(long[] words) {
+		
+		int length = Math.min(words.length, this.words.length);
+		
+		for(int i = 0; i < length; ++i)
+			words[i] |= this.words[i];
+		
+	}
+	
+	@Override
+	public void copyInto(long[] words) {
+		
+		int length = Math.min(words.length, this.words.length);
+		
+		System.arraycopy(this.words, 0, words, 0, length);
+		Arrays.fill(words, length, words.length, 0L);
+		
+	}
+	
+	@Override
+	public long getSizeInBytes() {
+		return getDenseSize(size);
+	}
+	
+}
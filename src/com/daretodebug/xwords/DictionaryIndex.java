@@ -0,0 +1,347 @@
+package com.daretodebug.xwords;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.zip.*;
+
+final class DictionaryIndex {
+	
+	// File layout (little endian):
+	//   header     magic, version, table count, word count, source length, source modification time
+	//   directory  one entry per table: offset, byte length, word count, checksum, padding
+	//   checksum   CRC32 of the header and directory
+	//   tables     each table is 8-byte aligned and holds the sorted words (one byte per
+	//              letter) followed by 26 * wordLength position bitmaps stored as longs
+	private static final int MAGIC = 0x58444958; // "XIDX"
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 32;
+	private static final int ENTRY_SIZE = 24;
+	private static final int LETTER_COUNT = 26;
+	
+	private final ByteBuffer buffer;
+	private final int wordCount;
+	private final long sourceLength;
+	private final long sourceModified;
+	private final long[] tableOffsets;
+	private final int[] tableSizes;
+	private final int[] tableWordCounts;
+	private final int[] tableChecksums;
+	private final boolean[] tableVerified;
+	
+	private DictionaryIndex(ByteBuffer buffer) throws IOException {
+		
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		this.buffer = buffer;
+		
+		if(buffer.capacity() < HEADER_SIZE + 4 || buffer.getInt(0) != MAGIC)
+			throw new IOException("Not a dictionary index file.");
+		
+		int version = buffer.getInt(4);
+		if(version != VERSION) throw new IOException("Unsupported dictionary index version: " + version);
+		
+		int tableCount = buffer.getInt(8);
+		wordCount = buffer.getInt(12);
+		sourceLength = buffer.getLong(16);
+		sourceModified = buffer.getLong(24);
+		
+		if(tableCount < 1 || wordCount < 1) throw new IOException("Dictionary index is corrupt.");
+		
+		int directoryEnd = HEADER_SIZE + tableCount * ENTRY_SIZE;
+		if(tableCount > (buffer.capacity() - HEADER_SIZE - 4) / ENTRY_SIZE)
+			throw new IOException("Dictionary index is truncated.");
+		
+		if(buffer.getInt(directoryEnd) != checksum(buffer, 0, directoryEnd))
+			throw new IOException("Dictionary index header checksum does not match.");
+		
+		tableOffsets = new long[tableCount];
+		tableSizes = new int[tableCount];
+		tableWordCounts = new int[tableCount];
+		tableChecksums = new int[tableCount];
+		tableVerified = new boolean[tableCount];
+		long tableWordTotal = 0;
+		
+		for(int i = 0; i < tableCount; ++i) {
+			
+			int entry = HEADER_SIZE + i * ENTRY_SIZE;
+			
+			tableOffsets[i] = buffer.getLong(entry);
+			tableSizes[i] = buffer.getInt(entry + 8);
+			tableWordCounts[i] = buffer.getInt(entry + 12);
+			tableChecksums[i] = buffer.getInt(entry + 16);
+			
+			if(tableOffsets[i] < directoryEnd + 4 || tableOffsets[i] + tableSizes[i] > buffer.capacity())
+				throw new IOException("Dictionary index is truncated.");
+			
+			if(tableSizes[i] != getTableSize(i + 2, tableWordCounts[i]))
+				throw new IOException("Dictionary index is corrupt.");
+			
+			tableWordTotal += tableWordCounts[i];
+			
+		}
+		
+		if(tableWordTotal != wordCount) throw new IOException("Dictionary index is corrupt.");
+		
+	}
+	
+	public static boolean isIndexFile(File file) {
+		
+		DataInputStream in = null;
+		
+		try {
+			
+			in = new DataInputStream(new FileInputStream(file));
+			return Integer.reverseBytes(in.readInt()) == MAGIC;
+			
+		} catch(IOException e) {
+			return false;
+		} finally {
+			
+			if(in != null) try {
+				in.close();
+			} catch(IOException e) {}
+			
+		}
+		
+	}
+	
+	public static DictionaryIndex open(File file) throws IOException {
+		
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		
+		try {
+			
+			// The mapping remains valid after the channel is closed
+			FileChannel channel = raf.getChannel();
+			return new DictionaryIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+			
+		} finally {
+			raf.close();
+		}
+		
+	}
+	
+	// The source is the word list the dictionary was read from, or null if there is none
+	public static void write(WordDictionary dictionary, File file, File source) throws IOException {
+		
+		int tableCount = dictionary.getTableCount();
+		int directoryEnd = HEADER_SIZE + tableCount * ENTRY_SIZE;
+		
+		ByteBuffer header = ByteBuffer.allocate(directoryEnd + 4).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.putInt(tableCount);
+		header.putInt(dictionary.getWordCount());
+		header.putLong((source != null) ? source.length() : -1);
+		header.putLong((source != null) ? source.lastModified() : -1);
+		
+		ByteBuffer[] tables = new ByteBuffer[tableCount];
+		long offset = align(directoryEnd + 4);
+		
+		for(int i = 0; i < tableCount; ++i) {
+			
+			ByteBuffer table = encodeTable(dictionary, i);
+			tables[i] = table;
+			
+			header.putLong(offset);
+			header.putInt(table.capacity());
+			header.putInt(dictionary.getWordTable(i).length);
+			header.putInt(checksum(table, 0, table.capacity()));
+			header.putInt(0);
+			
+			offset = align(offset + table.capacity());
+			
+		}
+		
+		header.putInt(checksum(header, 0, directoryEnd));
+		header.flip();
+		
+		// Written beside the file and then moved over it, so the file is never left half written
+		File temp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+		boolean moved = false;
+		
+		try {
+			
+			RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+			
+			try {
+				
+				FileChannel channel = raf.getChannel();
+				
+				long position = 0;
+				position += writeFully(channel, header, position);
+				
+				for(ByteBuffer table : tables) {
+					
+					position = align(position);
+					position += writeFully(channel, table, position);
+					
+				}
+				
+				channel.force(true);
+				
+			} finally {
+				raf.close();
+			}
+			
+			try {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch(AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			
+			moved = true;
+			
+		} finally {
+			if(!moved) temp.delete();
+		}
+		
+	}
+	
+	public int getTableCount() {
+		return tableOffsets.length;
+	}
+	
+	public int getWordCount() {
+		return wordCount;
+	}
+	
+	// Whether the index was written from the word list as it is now
+	public boolean isIndexOf(File source) {
+		return sourceLength >= 0 && sourceLength == source.length() && sourceModified == source.lastModified();
+	}
+	
+	public String[] readWords(int tableIndex) throws IOException {
+		
+		int wordLength = tableIndex + 2;
+		int count = tableWordCounts[tableIndex];
+		
+		ByteBuffer table = getTable(tableIndex);
+		byte[] letters = new byte[wordLength * count];
+		table.get(letters);
+		
+		String[] words = new String[count];
+		
+		for(int i = 0; i < count; ++i)
+			words[i] = new String(letters, i * wordLength, wordLength, StandardCharsets.US_ASCII);
+		
+		return words;
+		
+	}
+	
+	public WordBitmap readPositions(int tableIndex, char letter, int position) throws IOException {
+		
+		int wordLength = tableIndex + 2;
+		int count = tableWordCounts[tableIndex];
+		int longs = getBitmapLength(count);
+		
+		ByteBuffer table = getTable(tableIndex);
+		table.position(align(wordLength * count) + ((letter - 'A') * wordLength + position) * longs * 8);
+		
+		long[] bitmap = new long[longs];
+		table.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(bitmap);
+		
+		return WordBitmap.of(bitmap, count);
+		
+	}
+	
+	// Each table's checksum is checked the first time it is read rather than when the index is
+	// opened, so that opening an index doesn't page in all of it
+	private ByteBuffer getTable(int tableIndex) throws IOException {
+		
+		verifyTable(tableIndex);
+		
+		ByteBuffer duplicate = buffer.duplicate();
+		duplicate.position((int) tableOffsets[tableIndex]);
+		duplicate.limit((int) tableOffsets[tableIndex] + tableSizes[tableIndex]);
+		
+		return duplicate.slice().order(ByteOrder.LITTLE_ENDIAN);
+		
+	}
+	
+	private synchronized void verifyTable(int tableIndex) throws IOException {
+		
+		if(tableVerified[tableIndex]) return;
+		
+		int from = (int) tableOffsets[tableIndex];
+		
+		if(checksum(buffer, from, from + tableSizes[tableIndex]) != tableChecksums[tableIndex])
+			throw new IOException("Dictionary index table for " + (tableIndex + 2) + "-letter words is corrupt.");
+		
+		tableVerified[tableIndex] = true;
+		
+	}
+	
+	private static ByteBuffer encodeTable(WordDictionary dictionary, int tableIndex) {
+		
+		int wordLength = tableIndex + 2;
+		String[] words = dictionary.getWordTable(tableIndex);
+		int longs = getBitmapLength(words.length);
+		
+		ByteBuffer table = ByteBuffer.allocate(getTableSize(wordLength, words.length)).order(ByteOrder.LITTLE_ENDIAN);
+		
+		for(String word : words)
+			table.put(word.getBytes(StandardCharsets.US_ASCII));
+		
+		table.position(align(table.position()));
+		
+		long[] bitmap = new long[longs];
+		
+		for(char ch = 'A'; ch <= 'Z'; ++ch)
+			for(int position = 0; position < wordLength; ++position) {
+				
+				dictionary.getPositionTable(tableIndex, ch, position).copyInto(bitmap);
+				
+				for(long word : bitmap)
+					table.putLong(word);
+				
+			}
+		
+		table.flip();
+		return table;
+		
+	}
+	
+	private static int getTableSize(int wordLength, int wordCount) {
+		return align(wordLength * wordCount) + LETTER_COUNT * wordLength * getBitmapLength(wordCount) * 8;
+	}
+	
+	private static int getBitmapLength(int wordCount) {
+		return (wordCount + 63) >>> 6;
+	}
+	
+	private static int align(int offset) {
+		return (offset + 7) & ~7;
+	}
+	
+	private static long align(long offset) {
+		return (offset + 7) & ~7L;
+	}
+	
+	private static int checksum(ByteBuffer buffer, int from, int to) {
+		
+		ByteBuffer range = buffer.duplicate();
+		range.position(from);
+		range.limit(to);
+		
+		CRC32 crc = new CRC32();
+		crc.update(range);
+		
+		return (int) crc.getValue();
+		
+	}
+	
+	private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		
+		int written = 0;
+		
+		while(buffer.hasRemaining())
+			written += channel.write(buffer, position + written);
+		
+		return written;
+		
+	}
+	
+}
@@ -0,0 +1,263 @@
+package com.daretodebug.xwords;
+
+import java.util.*;
+
+public enum DoableWordEngine {
+	
+	// Checks every word of the slot's length against the hand
+	SCAN {
+		
+		@Override
+		public WordDictionary.Selection getDoableWords(WordDictionary dictionary, boolean[] mask, Hand hand) {
+			
+			List<String> words = dictionary.getWordsOfLength(mask.length);
+			BitSet doableWords = new BitSet(words.size());
+			
+			LetterIntMap letterCounts = new LetterIntMap();
+			int blankCount;
+			
+			nextWord:
+			for(int i = 0; i < words.size(); ++i) {
+				
+				hand.getLetterCounts(letterCounts);
+				blankCount = hand.getBlankCount();
+				
+				String word = words.get(i);
+				
+				for(int j = 0; j < mask.length; ++j) {
+					
+					// If this space is already filled, continue to next space
+					if(mask[j]) continue;
+					
+					// We have to fill this space; find out if we can
+					if(letterCounts.decrement(word.charAt(j)) >= 0)
+						continue;
+					
+					if((--blankCount) >= 0)
+						continue;
+					
+					// We don't have enough letters/blanks; skip to next word
+					continue nextWord;
+					
+				}
+				
+				// This word is doable
+				doableWords.set(i);
+				
+			}
+			
+			return dictionary.new Selection(mask.length, doableWords);
+			
+		}
+		
+	},
+	
+	// Combines the dictionary's "needs at least k of letter X" bitmaps for the slot's open
+	// positions; a word is doable when the letters it lacks can be covered by blanks
+	THRESHOLD_BITMAPS {
+		
+		@Override
+		public WordDictionary.Selection getDoableWords(WordDictionary dictionary, boolean[] mask, Hand hand) {
+			
+			WordBitmap[][] thresholds = dictionary.getLetterThresholds(mask);
+			if(thresholds == null) return SCAN.getDoableWords(dictionary, mask, hand);
+			
+			int emptyCount = 0;
+			
+			for(boolean masked : mask)
+				if(!masked) ++emptyCount;
+			
+			// Blanks can stand in for every open space
+			int blankCount = hand.getBlankCount();
+			if(blankCount >= emptyCount) return dictionary.new Selection(mask.length);
+			
+			int wordCount = dictionary.getWordsOfLength(mask.length).size();
+			int longCount = WordBitmap.getLongCount(wordCount);
+			
+			// shortBy[j] holds the words lacking at least j + 1 letters, counted in unary
+			long[][] shortBy = new long[blankCount + 1][longCount];
+			long[] bits = (blankCount > 0) ? new long[longCount] : null;
+			
+			for(char ch = 'A'; ch <= 'Z'; ++ch) {
+				
+				WordBitmap[] letterThresholds = thresholds[ch - 'A'];
+				
+				for(int k = hand.getLetterCount(ch); k < letterThresholds.length; ++k) {
+					
+					if(blankCount == 0) {
+						
+						letterThresholds[k].orInto(shortBy[0]);
+						continue;
+						
+					}
+					
+					letterThresholds[k].copyInto(bits);
+					
+					for(int j = blankCount; j > 0; --j) {
+						
+						long[] lower = shortBy[j - 1];
+						long[] upper = shortBy[j];
+						
+						for(int i = 0; i < longCount; ++i)
+							upper[i] |= lower[i] & bits[i];
+						
+					}
+					
+					long[] first = shortBy[0];
+					
+					for(int i = 0; i < longCount; ++i)
+						first[i] |= bits[i];
+					
+				}
+				
+			}
+			
+			long[] doableWords = shortBy[blankCount];
+			
+			for(int i = 0; i < longCount; ++i)
+				doableWords[i] = ~doableWords[i];
+			
+			int tail = wordCount & 63;
+			if(tail != 0) doableWords[longCount - 1] &= (1L << tail) - 1;
+			
+			return dictionary.select(mask.length, doableWords);
+			
+		}
+		
+	},
+	
+	// Subtracts each word's packed letter histogram from the hand's, four bits per letter,
+	// and uses the borrows to find how many letters the word lacks
+	SWAR {
+		
+		@Override
+		public WordDictionary.Selection getDoableWords(WordDictionary dictionary, boolean[] mask, Hand hand) {
+			return getDoableWords(dictionary, mask, new Hand[] { hand })[0];
+		}
+		
+		// Each word's histogram is loaded once and checked against all of the hands
+		@Override
+		public WordDictionary.Selection[] getDoableWords(WordDictionary dictionary, boolean[] mask, Hand[] hands) {
+			
+			long[] histograms = dictionary.getLetterHistograms(mask);
+			if(histograms == null) return SCAN.getDoableWords(dictionary, mask, hands);
+			
+			int handCount = hands.length;
+			long[] handLow = new long[handCount];
+			long[] handHigh = new long[handCount];
+			int[] blankCounts = new int[handCount];
+			
+			for(int h = 0; h < handCount; ++h) {
+				
+				// Words never need more than seven of a letter here, so the hand's counts can be capped
+				handLow[h] = WordDictionary.HISTOGRAM_GUARDS;
+				handHigh[h] = WordDictionary.HISTOGRAM_GUARDS;
+				
+				for(int letter = 0; letter < 26; ++letter) {
+					
+					long count = Math.min(hands[h].getLetterCount((char) ('A' + letter)), 7);
+					
+					if(letter < 16) handLow[h] |= count << (letter << 2);
+					else handHigh[h] |= count << ((letter - 16) << 2);
+					
+				}
+				
+				blankCounts[h] = hands[h].getBlankCount();
+				
+			}
+			
+			int wordCount = histograms.length / 2;
+			long[][] doableWords = new long[handCount][WordBitmap.getLongCount(wordCount)];
+			
+			for(int i = 0; i < wordCount; ++i) {
+				
+				long wordLow = histograms[i * 2];
+				long wordHigh = histograms[i * 2 + 1];
+				long bit = 1L << i;
+				
+				if(wordLow == WordDictionary.HISTOGRAM_OVERFLOW) {
+					
+					String word = dictionary.getWordsOfLength(mask.length).get(i);
+					
+					for(int h = 0; h < handCount; ++h)
+						if(getShortage(word, mask, hands[h]) <= blankCounts[h]) doableWords[h][i >>> 6] |= bit;
+					
+					continue;
+					
+				}
+				
+				for(int h = 0; h < handCount; ++h) {
+					
+					long low = handLow[h] - wordLow;
+					long high = handHigh[h] - wordHigh;
+					
+					if((low & high & WordDictionary.HISTOGRAM_GUARDS) == WordDictionary.HISTOGRAM_GUARDS
+						|| (blankCounts[h] > 0 && getShortage(low) + getShortage(high) <= blankCounts[h]))
+						doableWords[h][i >>> 6] |= bit;
+					
+				}
+				
+			}
+			
+			WordDictionary.Selection[] selections = new WordDictionary.Selection[handCount];
+			
+			for(int h = 0; h < handCount; ++h)
+				selections[h] = dictionary.select(mask.length, doableWords[h]);
+			
+			return selections;
+			
+		}
+		
+	};
+	
+	private static final long FIELD_COUNT_BITS = 0x7777777777777777L;
+	private static final long BYTE_LOW_BITS = 0x0F0F0F0F0F0F0F0FL;
+	private static final long BYTE_ONES = 0x0101010101010101L;
+	
+	// Sums the missing letters in the difference of two histograms; each field of a difference
+	// holds 8 + have - need, so a field with its top bit cleared is short by 8 minus its value
+	private static int getShortage(long difference) {
+		
+		long borrowed = (~difference & WordDictionary.HISTOGRAM_GUARDS) >>> 3;
+		if(borrowed == 0) return 0;
+		
+		long shortage = (~difference & FIELD_COUNT_BITS & (borrowed * 0xF)) + borrowed;
+		shortage = (shortage & BYTE_LOW_BITS) + ((shortage >>> 4) & BYTE_LOW_BITS);
+		
+		return (int) ((shortage * BYTE_ONES) >>> 56);
+		
+	}
+	
+	private static int getShortage(String word, boolean[] mask, Hand hand) {
+		
+		int[] counts = new int[26];
+		int shortage = 0;
+		
+		for(int i = 0; i < mask.length; ++i) {
+			
+			if(mask[i]) continue;
+			
+			char letter = word.charAt(i);
+			if(++counts[letter - 'A'] > hand.getLetterCount(letter)) ++shortage;
+			
+		}
+		
+		return shortage;
+		
+	}
+	
+	public abstract WordDictionary.Selection getDoableWords(WordDictionary dictionary, boolean[] mask, Hand hand);
+	
+	// The doable words for each of the hands, in the same order
+	public WordDictionary.Selection[] getDoableWords(WordDictionary dictionary, boolean[] mask, Hand[] hands) {
+		
+		WordDictionary.Selection[] doableWords = new WordDictionary.Selection[hands.length];
+		
+		for(int i = 0; i < hands.length; ++i)
+			doableWords[i] = getDoableWords(dictionary, mask, hands[i]);
+		
+		return doableWords;
+		
+	}
+	
+}
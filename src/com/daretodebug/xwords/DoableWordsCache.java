@@ -0,0 +1,266 @@
+package com.daretodebug.xwords;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+// Doable words shared by every slot mask, keyed by the dictionary, the mask's open positions and
+// the hand. Entries are weighed by the size of their bitmaps, and the least recently used are
+// dropped once the total passes the limit. The entries are spread over segments that each hold
+// their own lock and an equal share of the limit
+public final class DoableWordsCache {
+	
+	public static final long DEFAULT_WEIGHT_LIMIT = 64L << 20;
+	
+	private static final int SEGMENT_COUNT = 16;
+	private static final long ENTRY_OVERHEAD = 96;
+	private static final DoableWordsCache SHARED = new DoableWordsCache(DEFAULT_WEIGHT_LIMIT);
+	
+	private final long weightLimit;
+	private final Segment[] segments;
+	
+	// Dictionaries whose entries were dropped, held weakly so they can still be collected
+	private final Map<WordDictionary, Boolean> invalidated = Collections.synchronizedMap(new WeakHashMap<WordDictionary, Boolean>());
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+	
+	public DoableWordsCache(long weightLimit) {
+		
+		if(weightLimit < 0) throw new IllegalArgumentException("Weight limit cannot be negative.");
+		
+		this.weightLimit = weightLimit;
+		segments = new Segment[SEGMENT_COUNT];
+		
+		for(int i = 0; i < segments.length; ++i)
+			segments[i] = new Segment(weightLimit / SEGMENT_COUNT);
+		
+	}
+	
+	// The cache slot masks go through
+	public static DoableWordsCache getShared() {
+		return SHARED;
+	}
+	
+	// Returns null if the words aren't cached
+	public WordDictionary.Selection get(WordDictionary dictionary, boolean[] mask, Hand hand) {
+		
+		Key key = new Key(dictionary, mask, hand);
+		WordDictionary.Selection doableWords = getSegment(key).get(key);
+		
+		if(doableWords == null) missCount.incrementAndGet();
+		else hitCount.incrementAndGet();
+		
+		return doableWords;
+		
+	}
+	
+	// The selection is shared with every thread that looks it up, so it must already be frozen
+	public void put(WordDictionary dictionary, boolean[] mask, Hand hand, WordDictionary.Selection doableWords) {
+		
+		if(doableWords == null) throw new NullPointerException();
+		
+		Key key = new Key(dictionary, mask, hand);
+		getSegment(key).put(key, doableWords);
+		
+	}
+	
+	public void clear() {
+		
+		for(Segment segment : segments)
+			segment.clear();
+		
+	}
+	
+	// Drops every entry for a dictionary that is no longer used, and turns away any that searches
+	// still running with it try to add, so the cache doesn't keep the dictionary from being
+	// collected
+	public void invalidate(WordDictionary dictionary) {
+		
+		if(dictionary == null) throw new NullPointerException();
+		
+		invalidated.put(dictionary, Boolean.TRUE);
+		
+		for(Segment segment : segments)
+			segment.invalidate(dictionary);
+		
+	}
+	
+	public long getWeightLimit() {
+		return weightLimit;
+	}
+	
+	// Bytes held by the cached bitmaps, plus a fixed overhead per entry
+	public long getWeight() {
+		
+		long weight = 0;
+		
+		for(Segment segment : segments)
+			weight += segment.getWeight();
+		
+		return weight;
+		
+	}
+	
+	public int size() {
+		
+		int size = 0;
+		
+		for(Segment segment : segments)
+			size += segment.size();
+		
+		return size;
+		
+	}
+	
+	public long getHitCount() {
+		return hitCount.get();
+	}
+	
+	public long getMissCount() {
+		return missCount.get();
+	}
+	
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+	
+	public double getHitRate() {
+		
+		long hits = hitCount.get();
+		long lookups = hits + missCount.get();
+		
+		return (lookups == 0) ? 0 : (double) hits / lookups;
+		
+	}
+	
+	private Segment getSegment(Key key) {
+		
+		int hash = key.hashCode();
+		hash ^= hash >>> 16;
+		
+		return segments[hash & (SEGMENT_COUNT - 1)];
+		
+	}
+	
+	private static long getEntryWeight(WordDictionary.Selection doableWords) {
+		return ENTRY_OVERHEAD + doableWords.getSizeInBytes();
+	}
+	
+	private final class Segment {
+		
+		private final long weightLimit;
+		private final LinkedHashMap<Key, WordDictionary.Selection> entries = new LinkedHashMap<Key, WordDictionary.Selection>(16, 0.75f, true);
+		private long weight;
+		
+		public Segment(long weightLimit) {
+			this.weightLimit = weightLimit;
+		}
+		
+		public synchronized WordDictionary.Selection get(Key key) {
+			return entries.get(key);
+		}
+		
+		public synchronized void put(Key key, WordDictionary.Selection doableWords) {
+			
+			// Checked under the segment's lock so that entries can't slip in behind invalidate
+			if(invalidated.containsKey(key.dictionary)) return;
+			
+			long entryWeight = getEntryWeight(doableWords);
+			
+			// Entries too heavy for the segment would only push everything else out
+			if(entryWeight > weightLimit) return;
+			
+			WordDictionary.Selection old = entries.put(key, doableWords);
+			if(old != null) weight -= getEntryWeight(old);
+			weight += entryWeight;
+			
+			// Least recently used first
+			Iterator<WordDictionary.Selection> iterator = entries.values().iterator();
+			
+			while(weight > weightLimit) {
+				
+				weight -= getEntryWeight(iterator.next());
+				iterator.remove();
+				
+				evictionCount.incrementAndGet();
+				
+			}
+			
+		}
+		
+		public synchronized void clear() {
+			
+			entries.clear();
+			weight = 0;
+			
+		}
+		
+		public synchronized void invalidate(WordDictionary dictionary) {
+			
+			Iterator<Map.Entry<Key, WordDictionary.Selection>> iterator = entries.entrySet().iterator();
+			
+			while(iterator.hasNext()) {
+				
+				Map.Entry<Key, WordDictionary.Selection> entry = iterator.next();
+				
+				if(entry.getKey().dictionary == dictionary) {
+					
+					weight -= getEntryWeight(entry.getValue());
+					iterator.remove();
+					
+				}
+				
+			}
+			
+		}
+		
+		public synchronized long getWeight() {
+			return weight;
+		}
+		
+		public synchronized int size() {
+			return entries.size();
+		}
+		
+	}
+	
+	// Masks are never changed once made, so keys share them rather than copying
+	private static final class Key {
+		
+		private final WordDictionary dictionary;
+		private final boolean[] mask;
+		private final Hand hand;
+		private final int hash;
+		
+		public Key(WordDictionary dictionary, boolean[] mask, Hand hand) {
+			
+			if(dictionary == null || mask == null || hand == null) throw new NullPointerException();
+			
+			this.dictionary = dictionary;
+			this.mask = mask;
+			this.hand = hand;
+			
+			hash = (System.identityHashCode(dictionary) * 31 + Arrays.hashCode(mask)) * 31 + hand.hashCode();
+			
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			
+			if(o == this) return true;
+			if(!(o instanceof Key)) return false;
+			
+			Key k = (Key) o;
+			
+			return hash == k.hash && dictionary == k.dictionary && Arrays.equals(mask, k.mask) && hand.equals(k.hand);
+			
+		}
+		
+	}
+	
+}
@@ -0,0 +1,320 @@
+package com.daretodebug.xwords;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+// Fitting words shared by every slot, keyed by the dictionary and the slot's letter pattern, so
+// that patterns which keep coming back across boards and games are only looked up once. Entries
+// are weighed by the size of their bitmaps. Once a segment is full, a new pattern is only let in
+// if it has been asked for more often lately than each of the least recently used patterns it
+// would push out, which keeps one-off patterns from flushing the popular ones
+public final class FittingWordsCache {
+	
+	public static final long DEFAULT_WEIGHT_LIMIT = 32L << 20;
+	
+	private static final int SEGMENT_COUNT = 16;
+	private static final long ENTRY_OVERHEAD = 96;
+	private static final long AVERAGE_ENTRY_WEIGHT = 1024;
+	private static final FittingWordsCache SHARED = new FittingWordsCache(DEFAULT_WEIGHT_LIMIT);
+	
+	private final long weightLimit;
+	private final Segment[] segments;
+	
+	// Dictionaries whose entries were dropped, held weakly so they can still be collected
+	private final Map<WordDictionary, Boolean> invalidated = Collections.synchronizedMap(new WeakHashMap<WordDictionary, Boolean>());
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong admissionCount = new AtomicLong();
+	private final AtomicLong rejectionCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+	
+	public FittingWordsCache(long weightLimit) {
+		
+		if(weightLimit < 0) throw new IllegalArgumentException("Weight limit cannot be negative.");
+		
+		this.weightLimit = weightLimit;
+		segments = new Segment[SEGMENT_COUNT];
+		
+		long segmentLimit = weightLimit / SEGMENT_COUNT;
+		int keyCount = (int) Math.min(segmentLimit / AVERAGE_ENTRY_WEIGHT, 1 << 20);
+		
+		for(int i = 0; i < segments.length; ++i)
+			segments[i] = new Segment(segmentLimit, keyCount);
+		
+	}
+	
+	// The cache slots go through
+	public static FittingWordsCache getShared() {
+		return SHARED;
+	}
+	
+	// Patterns hold a letter for each filled space and zero for each empty one; returns null if
+	// the words aren't cached
+	public WordDictionary.Selection get(WordDictionary dictionary, char[] pattern) {
+		
+		Key key = new Key(dictionary, pattern);
+		WordDictionary.Selection fittingWords = getSegment(key).get(key);
+		
+		if(fittingWords == null) missCount.incrementAndGet();
+		else hitCount.incrementAndGet();
+		
+		return fittingWords;
+		
+	}
+	
+	// The selection is shared with every thread that looks it up, so it must already be frozen
+	public void put(WordDictionary dictionary, char[] pattern, WordDictionary.Selection fittingWords) {
+		
+		if(fittingWords == null) throw new NullPointerException();
+		
+		Key key = new Key(dictionary, pattern);
+		getSegment(key).put(key, fittingWords);
+		
+	}
+	
+	public void clear() {
+		
+		for(Segment segment : segments)
+			segment.clear();
+		
+	}
+	
+	// Drops every entry for a dictionary that is no longer used, and turns away any that searches
+	// still running with it try to add, so the cache doesn't keep the dictionary from being
+	// collected
+	public void invalidate(WordDictionary dictionary) {
+		
+		if(dictionary == null) throw new NullPointerException();
+		
+		invalidated.put(dictionary, Boolean.TRUE);
+		
+		for(Segment segment : segments)
+			segment.invalidate(dictionary);
+		
+	}
+	
+	public long getWeightLimit() {
+		return weightLimit;
+	}
+	
+	// Bytes held by the cached bitmaps, plus a fixed overhead per entry
+	public long getWeight() {
+		
+		long weight = 0;
+		
+		for(Segment segment : segments)
+			weight += segment.getWeight();
+		
+		return weight;
+		
+	}
+	
+	public int size() {
+		
+		int size = 0;
+		
+		for(Segment segment : segments)
+			size += segment.size();
+		
+		return size;
+		
+	}
+	
+	public long getHitCount() {
+		return hitCount.get();
+	}
+	
+	public long getMissCount() {
+		return missCount.get();
+	}
+	
+	// Patterns let in, and patterns turned away because what they would have pushed out was
+	// more popular
+	public long getAdmissionCount() {
+		return admissionCount.get();
+	}
+	
+	public long getRejectionCount() {
+		return rejectionCount.get();
+	}
+	
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+	
+	public double getHitRate() {
+		
+		long hits = hitCount.get();
+		long lookups = hits + missCount.get();
+		
+		return (lookups == 0) ? 0 : (double) hits / lookups;
+		
+	}
+	
+	private Segment getSegment(Key key) {
+		
+		int hash = key.hashCode();
+		hash ^= hash >>> 16;
+		
+		return segments[hash & (SEGMENT_COUNT - 1)];
+		
+	}
+	
+	private static long getEntryWeight(WordDictionary.Selection fittingWords) {
+		return ENTRY_OVERHEAD + fittingWords.getSizeInBytes();
+	}
+	
+	private final class Segment {
+		
+		private final long weightLimit;
+		private final LinkedHashMap<Key, WordDictionary.Selection> entries = new LinkedHashMap<Key, WordDictionary.Selection>(16, 0.75f, true);
+		private final FrequencySketch sketch;
+		private long weight;
+		
+		public Segment(long weightLimit, int keyCount) {
+			
+			this.weightLimit = weightLimit;
+			sketch = new FrequencySketch(keyCount);
+			
+		}
+		
+		// Every lookup counts towards the pattern's popularity, found or not
+		public synchronized WordDictionary.Selection get(Key key) {
+			
+			sketch.increment(key.hashCode());
+			return entries.get(key);
+			
+		}
+		
+		public synchronized void put(Key key, WordDictionary.Selection fittingWords) {
+			
+			// Checked under the segment's lock so that entries can't slip in behind invalidate
+			if(invalidated.containsKey(key.dictionary)) return;
+			
+			long entryWeight = getEntryWeight(fittingWords);
+			
+			if(entryWeight > weightLimit) {
+				
+				rejectionCount.incrementAndGet();
+				return;
+				
+			}
+			
+			WordDictionary.Selection old = entries.remove(key);
+			if(old != null) weight -= getEntryWeight(old);
+			
+			// Patterns already in are replaced without having to win their place again
+			int frequency = (old == null) ? sketch.getFrequency(key.hashCode()) : Integer.MAX_VALUE;
+			
+			// Find the least recently used entries that would have to go to make room
+			ArrayList<Key> victims = new ArrayList<Key>();
+			long freedWeight = 0;
+			
+			if(weight + entryWeight > weightLimit) {
+				
+				for(Map.Entry<Key, WordDictionary.Selection> entry : entries.entrySet()) {
+					
+					if(sketch.getFrequency(entry.getKey().hashCode()) >= frequency) {
+						
+						rejectionCount.incrementAndGet();
+						return;
+						
+					}
+					
+					victims.add(entry.getKey());
+					freedWeight += getEntryWeight(entry.getValue());
+					
+					if(weight - freedWeight + entryWeight <= weightLimit) break;
+					
+				}
+				
+			}
+			
+			for(Key victim : victims) {
+				
+				entries.remove(victim);
+				evictionCount.incrementAndGet();
+				
+			}
+			
+			entries.put(key, fittingWords);
+			weight += entryWeight - freedWeight;
+			
+			admissionCount.incrementAndGet();
+			
+		}
+		
+		public synchronized void clear() {
+			
+			entries.clear();
+			weight = 0;
+			
+		}
+		
+		public synchronized void invalidate(WordDictionary dictionary) {
+			
+			Iterator<Map.Entry<Key, WordDictionary.Selection>> iterator = entries.entrySet().iterator();
+			
+			while(iterator.hasNext()) {
+				
+				Map.Entry<Key, WordDictionary.Selection> entry = iterator.next();
+				
+				if(entry.getKey().dictionary == dictionary) {
+					
+					weight -= getEntryWeight(entry.getValue());
+					iterator.remove();
+					
+				}
+				
+			}
+			
+		}
+		
+		public synchronized long getWeight() {
+			return weight;
+		}
+		
+		public synchronized int size() {
+			return entries.size();
+		}
+		
+	}
+	
+	// Patterns are never changed once made, so keys share them rather than copying
+	private static final class Key {
+		
+		private final WordDictionary dictionary;
+		private final char[] pattern;
+		private final int hash;
+		
+		public Key(WordDictionary dictionary, char[] pattern) {
+			
+			if(dictionary == null || pattern == null) throw new NullPointerException();
+			
+			this.dictionary = dictionary;
+			this.pattern = pattern;
+			
+			hash = System.identityHashCode(dictionary) * 31 + Arrays.hashCode(pattern);
+			
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			
+			if(o == this) return true;
+			if(!(o instanceof Key)) return false;
+			
+			Key k = (Key) o;
+			
+			return hash == k.hash && dictionary == k.dictionary && Arrays.equals(pattern, k.pattern);
+			
+		}
+		
+	}
+	
+}
@@ -0,0 +1,82 @@
+package com.daretodebug.xwords;
+
+// Estimates how often keys have been seen recently from their hashes. Each key maps to four
+// four-bit counters, and the smallest of them is its estimate; all of the counters are halved
+// every so often so that keys that were popular long ago fade out. Not thread safe
+final class FrequencySketch {
+	
+	private static final long[] SEEDS = { 0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L };
+	private static final long HALVING_MASK = 0x7777777777777777L;
+	private static final int MAX_COUNT = 15;
+	
+	private final long[] table;
+	private final int counterMask;
+	private final int sampleSize;
+	private int additions;
+	
+	// Sized for about the given number of keys to be tracked at once
+	public FrequencySketch(int keyCount) {
+		
+		int counterCount = Integer.highestOneBit(Math.max(keyCount, 64) - 1) << 1;
+		
+		table = new long[counterCount >>> 4];
+		counterMask = counterCount - 1;
+		sampleSize = counterCount * 10;
+		
+	}
+	
+	public int getFrequency(int hash) {
+		
+		int frequency = MAX_COUNT;
+		
+		for(int i = 0; i < SEEDS.length; ++i)
+			frequency = Math.min(frequency, getCount(getIndex(hash, i)));
+		
+		return frequency;
+		
+	}
+	
+	public void increment(int hash) {
+		
+		boolean added = false;
+		
+		for(int i = 0; i < SEEDS.length; ++i) {
+			
+			int index = getIndex(hash, i);
+			
+			if(getCount(index) < MAX_COUNT) {
+				
+				table[index >>> 4] += 1L << ((index & 15) << 2);
+				added = true;
+				
+			}
+			
+		}
+		
+		if(added && ++additions == sampleSize) halve();
+		
+	}
+	
+	private void halve() {
+		
+		for(int i = 0; i < table.length; ++i)
+			table[i] = (table[i] >>> 1) & HALVING_MASK;
+		
+		additions >>>= 1;
+		
+	}
+	
+	private int getCount(int index) {
+		return (int) (table[index >>> 4] >>> ((index & 15) << 2)) & MAX_COUNT;
+	}
+	
+	private int getIndex(int hash, int i) {
+		
+		long h = (hash + SEEDS[i]) * SEEDS[i];
+		h += h >>> 32;
+		
+		return (int) h & counterMask;
+		
+	}
+	
+}
@@ -0,0 +1,211 @@
+package com.daretodebug.xwords;
+
+import java.util.*;
+
+// A map for interning slots, which work out their hash codes once when made. Entries sit in
+// flat arrays with their hashes alongside and collisions go to the next free index; removing
+// an entry shifts the rest of its run back, so lookups never have to step over markers left by
+// removed entries. Not thread safe
+final class InternTable<K, V> {
+	
+	private static final int MIN_CAPACITY = 16;
+	
+	private int[] hashes;
+	private Object[] keys;
+	private Object[] values;
+	private int mask;
+	private int size;
+	
+	public InternTable() {
+		allocate(MIN_CAPACITY);
+	}
+	
+	private void allocate(int capacity) {
+		
+		hashes = new int[capacity];
+		keys = new Object[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+		
+	}
+	
+	// Slot hashes are built by shifting letters in, so mix the high bits into the index too
+	private int getHome(int hash) {
+		
+		hash *= 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & mask;
+		
+	}
+	
+	private int indexOf(Object key, int hash) {
+		
+		for(int i = getHome(hash); ; i = (i + 1) & mask) {
+			
+			Object k = keys[i];
+			
+			if(k == null) return -1;
+			if(hashes[i] == hash && (k == key || k.equals(key))) return i;
+			
+		}
+		
+	}
+	
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+		
+		int index = indexOf(key, key.hashCode());
+		return (index < 0) ? null : (V) values[index];
+		
+	}
+	
+	@SuppressWarnings("unchecked")
+	public V put(K key, V value) {
+		
+		if(key == null || value == null) throw new NullPointerException();
+		
+		int hash = key.hashCode();
+		int i = getHome(hash);
+		
+		for(; keys[i] != null; i = (i + 1) & mask)
+			if(hashes[i] == hash && (keys[i] == key || keys[i].equals(key))) {
+				
+				V old = (V) values[i];
+				values[i] = value;
+				
+				return old;
+				
+			}
+		
+		hashes[i] = hash;
+		keys[i] = key;
+		values[i] = value;
+		
+		// Kept no more than half full so that runs stay short
+		if(++size > (mask + 1) >>> 1) resize((mask + 1) << 1);
+		
+		return null;
+		
+	}
+	
+	@SuppressWarnings("unchecked")
+	public V remove(Object key) {
+		
+		int i = indexOf(key, key.hashCode());
+		if(i < 0) return null;
+		
+		V old = (V) values[i];
+		
+		// Move back each later entry of the run whose home isn't between the gap and itself
+		for(int j = (i + 1) & mask; keys[j] != null; j = (j + 1) & mask) {
+			
+			if(((j - getHome(hashes[j])) & mask) < ((j - i) & mask)) continue;
+			
+			hashes[i] = hashes[j];
+			keys[i] = keys[j];
+			values[i] = values[j];
+			
+			i = j;
+			
+		}
+		
+		keys[i] = null;
+		values[i] = null;
+		--size;
+		
+		return old;
+		
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public void clear() {
+		
+		if(size == 0) return;
+		
+		Arrays.fill(keys, null);
+		Arrays.fill(values, null);
+		size = 0;
+		
+	}
+	
+	private void resize(int capacity) {
+		
+		int[] oldHashes = hashes;
+		Object[] oldKeys = keys;
+		Object[] oldValues = values;
+		
+		allocate(capacity);
+		
+		for(int j = 0; j < oldKeys.length; ++j) {
+			
+			if(oldKeys[j] == null) continue;
+			
+			int i = getHome(oldHashes[j]);
+			while(keys[i] != null) i = (i + 1) & mask;
+			
+			hashes[i] = oldHashes[j];
+			keys[i] = oldKeys[j];
+			values[i] = oldValues[j];
+			
+		}
+		
+	}
+	
+	// A view of the values in table order, which must not be changed while it is gone through
+	public Collection<V> values() {
+		
+		return new AbstractCollection<V>() {
+			
+			@Override
+			public Iterator<V> iterator() {
+				
+				return new Iterator<V>() {
+					
+					private int next = advance(0);
+					
+					private int advance(int index) {
+						
+						while(index < keys.length && keys[index] == null) ++index;
+						return index;
+						
+					}
+					
+					@Override
+					public boolean hasNext() {
+						return next < keys.length;
+					}
+					
+					@Override
+					@SuppressWarnings("unchecked")
+					public V next() {
+						
+						if(next >= keys.length) throw new NoSuchElementException();
+						
+						V value = (V) values[next];
+						next = advance(next + 1);
+						
+						return value;
+						
+					}
+					
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+					
+				};
+				
+			}
+			
+			@Override
+			public int size() {
+				return size;
+			}
+			
+		};
+		
+	}
+	
+}
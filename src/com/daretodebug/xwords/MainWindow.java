@@ -3,6 +3,7 @@ package com.daretodebug.xwords;
 import java.awt.*;
 import java.awt.event.*;
 import java.text.*;
+import java.util.concurrent.*;
 import javax.swing.*;
 import javax.swing.event.*;
 
@@ -30,8 +31,17 @@ public class MainWindow extends JFrame {
 				WordDictionary dictionary = Program.loadDictionary(MainWindow.this, path);
 				if(dictionary == null) return;
 				
+				WordDictionary oldDictionary = board.getDictionary();
 				board.setDictionary(dictionary);
 				
+				// The board was the only thing searching with the old dictionary
+				if(oldDictionary != dictionary) {
+					
+					DoableWordsCache.getShared().invalidate(oldDictionary);
+					FittingWordsCache.getShared().invalidate(oldDictionary);
+					
+				}
+				
 			}
 			
 		});
@@ -73,6 +83,9 @@ public class MainWindow extends JFrame {
 		
 		board = new DefaultBoard(startingDictionary);
 		
+		// Spread searches over the other cores, if there are any
+		if(Runtime.getRuntime().availableProcessors() > 1) board.setSearchPool(ForkJoinPool.commonPool());
+		
 		Box boardPane = Box.createHorizontalBox();
 		boardPane.add(new BoardControl(board));
 		boardPane.setBorder(BorderFactory.createTitledBorder("Board"));
@@ -0,0 +1,191 @@
+package com.daretodebug.xwords;
+
+import java.util.*;
+
+import com.daretodebug.xwords.BoardModel.*;
+
+// Moves kept as columns of numbers rather than as objects: the main word's index among the
+// words of its length, the slot and which of its positions, the open squares taking blanks, the
+// score and the tiles used. Slots are numbered by a table taken when the buffer is made, which
+// buffers made from it share, so later changes to the slots don't reach the moves. Not thread
+// safe
+final class MoveBuffer {
+	
+	private static final int MIN_CAPACITY = 16;
+	
+	private final ComplexSlot[] slots;
+	private final Position[][] positions;
+	
+	private int[] wordIds;
+	private int[] slotIds;
+	private int[] positionIndices;
+	private long[] blanks;
+	private int[] scores;
+	private byte[] tilesUsed;
+	private int size;
+	
+	public MoveBuffer(Collection<AbstractMap.SimpleEntry<ComplexSlot, ArrayList<Position>>> entries) {
+		
+		slots = new ComplexSlot[entries.size()];
+		positions = new Position[entries.size()][];
+		
+		int slotId = 0;
+		
+		for(AbstractMap.SimpleEntry<ComplexSlot, ArrayList<Position>> entry : entries) {
+			
+			slots[slotId] = entry.getKey();
+			positions[slotId] = entry.getValue().toArray(new Position[entry.getValue().size()]);
+			++slotId;
+			
+		}
+		
+		allocate(MIN_CAPACITY);
+		
+	}
+	
+	// An empty buffer numbering its slots the same way as the given one
+	public MoveBuffer(MoveBuffer buffer) {
+		
+		slots = buffer.slots;
+		positions = buffer.positions;
+		
+		allocate(MIN_CAPACITY);
+		
+	}
+	
+	private void allocate(int capacity) {
+		
+		wordIds = new int[capacity];
+		slotIds = new int[capacity];
+		positionIndices = new int[capacity];
+		blanks = new long[capacity];
+		scores = new int[capacity];
+		tilesUsed = new byte[capacity];
+		
+	}
+	
+	private void grow() {
+		
+		int capacity = wordIds.length * 2;
+		
+		wordIds = Arrays.copyOf(wordIds, capacity);
+		slotIds = Arrays.copyOf(slotIds, capacity);
+		positionIndices = Arrays.copyOf(positionIndices, capacity);
+		blanks = Arrays.copyOf(blanks, capacity);
+		scores = Arrays.copyOf(scores, capacity);
+		tilesUsed = Arrays.copyOf(tilesUsed, capacity);
+		
+	}
+	
+	public int getSlotCount() {
+		return slots.length;
+	}
+	
+	public ComplexSlot getSlot(int slotId) {
+		return slots[slotId];
+	}
+	
+	public Position[] getPositions(int slotId) {
+		return positions[slotId];
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public void add(int wordId, int slotId, int positionIndex, long blanks, int score, int tilesUsed) {
+		
+		if(size == wordIds.length) grow();
+		set(size++, wordId, slotId, positionIndex, blanks, score, tilesUsed);
+		
+	}
+	
+	// Copies a move from a buffer sharing this one's slot table
+	public void add(MoveBuffer buffer, int index) {
+		add(buffer.wordIds[index], buffer.slotIds[index], buffer.positionIndices[index], buffer.blanks[index], buffer.scores[index], buffer.tilesUsed[index]);
+	}
+	
+	// Replaces the move at the given index
+	public void set(int index, int wordId, int slotId, int positionIndex, long blanks, int score, int tilesUsed) {
+		
+		this.wordIds[index] = wordId;
+		this.slotIds[index] = slotId;
+		this.positionIndices[index] = positionIndex;
+		this.blanks[index] = blanks;
+		this.scores[index] = score;
+		this.tilesUsed[index] = (byte) tilesUsed;
+		
+	}
+	
+	public int getWordId(int index) {
+		return wordIds[index];
+	}
+	
+	public int getSlotId(int index) {
+		return slotIds[index];
+	}
+	
+	public Position getPosition(int index) {
+		return positions[slotIds[index]][positionIndices[index]];
+	}
+	
+	public long getBlanks(int index) {
+		return blanks[index];
+	}
+	
+	public int getScore(int index) {
+		return scores[index];
+	}
+	
+	public int getTilesUsed(int index) {
+		return tilesUsed[index];
+	}
+	
+	// Orders the moves highest score first, keeping the order of moves with equal scores
+	public void sortByScore() {
+		
+		// Sorting keys of the inverted score over the index keeps it stable
+		long[] keys = new long[size];
+		for(int i = 0; i < size; ++i)
+			keys[i] = ((long) ~scores[i] << 32) | i;
+		
+		Arrays.sort(keys);
+		
+		int[] wordIds = new int[this.wordIds.length];
+		int[] slotIds = new int[this.slotIds.length];
+		int[] positionIndices = new int[this.positionIndices.length];
+		long[] blanks = new long[this.blanks.length];
+		int[] scores = new int[this.scores.length];
+		byte[] tilesUsed = new byte[this.tilesUsed.length];
+		
+		for(int i = 0; i < size; ++i) {
+			
+			int index = (int) keys[i];
+			
+			wordIds[i] = this.wordIds[index];
+			slotIds[i] = this.slotIds[index];
+			positionIndices[i] = this.positionIndices[index];
+			blanks[i] = this.blanks[index];
+			scores[i] = this.scores[index];
+			tilesUsed[i] = this.tilesUsed[index];
+			
+		}
+		
+		this.wordIds = wordIds;
+		this.slotIds = slotIds;
+		this.positionIndices = positionIndices;
+		this.blanks = blanks;
+		this.scores = scores;
+		this.tilesUsed = tilesUsed;
+		
+	}
+	
+	// Makes the move at the given index as an object, scored as it was found
+	public Move createMove(int index, BoardSnapshot board, WordDictionary dictionary) {
+		
+		UnpositionedMove move = slots[slotIds[index]].createMove(dictionary, wordIds[index], blanks[index]);
+		return move.position(board, getPosition(index), scores[index]);
+		
+	}
+	
+}
@@ -0,0 +1,837 @@
+package com.daretodebug.xwords;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import com.daretodebug.xwords.BoardModel.*;
+
+// Finds the moves a hand can make on a board. Holds no state between searches, so any number
+// of threads can search with one generator at once; interrupting a searching thread makes its
+// search return early with what it has found so far
+public final class MoveGenerator {
+	
+	// Jobs read ahead by a batch search at once; those on equal boards share one set of slots
+	public static final int BATCH_SIZE = 256;
+	private static final int BATCH_KEEP_LIMIT = 1 << 16;
+	
+	// Hands whose doable words are worked out together by a multi-hand search
+	public static final int HAND_GROUP_SIZE = 16;
+	
+	// Each thread keeps the single tile moves of its last search for its next one to reuse
+	private static final ThreadLocal<SingleTileMoves> spareSingleTileMoves = new ThreadLocal<SingleTileMoves>();
+	
+	private final ForkJoinPool pool;
+	
+	public MoveGenerator() {
+		this(null);
+	}
+	
+	// Searches are split across the given pool, or run on the calling thread if null
+	public MoveGenerator(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+	
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+	
+	public MoveList search(BoardSnapshot board, Hand hand, WordDictionary dictionary) {
+		return search(new BoardSlots(board), hand, dictionary, 0, System.nanoTime(), -1, null);
+	}
+	
+	// Gives up on the slots left once the timeout has passed; a moveLimit of zero keeps every
+	// move found
+	public MoveList search(BoardSnapshot board, Hand hand, WordDictionary dictionary, int moveLimit, long timeout, TimeUnit unit) {
+		
+		long startTime = System.nanoTime();
+		return search(new BoardSlots(board), hand, dictionary, moveLimit, startTime, unit.toNanos(timeout), null);
+		
+	}
+	
+	// Finds the moves for each of the hands on the one board, in the order given. The words that
+	// fit the board's slots are found once for all of the hands, and the words the hands can make
+	// are found a group of hands at a time; the hands themselves are spread across the pool
+	public List<MoveList> searchHands(BoardSnapshot board, List<Hand> hands, WordDictionary dictionary, int moveLimit) {
+		
+		if(board == null || hands == null || dictionary == null) throw new NullPointerException();
+		if(moveLimit < 0) throw new IllegalArgumentException("Move limit cannot be negative.");
+		
+		// The same hand finds the same moves
+		ArrayList<Hand> distinctHands = new ArrayList<Hand>();
+		HashMap<Hand, Integer> handIndices = new HashMap<Hand, Integer>();
+		
+		for(Hand hand : hands) {
+			
+			if(hand == null) throw new NullPointerException();
+			
+			if(!handIndices.containsKey(hand)) {
+				
+				handIndices.put(hand, distinctHands.size());
+				distinctHands.add(hand);
+				
+			}
+			
+		}
+		
+		BoardSlots slots = new BoardSlots(board);
+		LinkedHashSet<SlotMask> maskSet = new LinkedHashSet<SlotMask>();
+		
+		for(AbstractMap.SimpleEntry<ComplexSlot, ArrayList<Position>> entry : slots.getSlots())
+			maskSet.add(entry.getKey().getMainSlot().getMask());
+		
+		ArrayList<SlotMask> masks = new ArrayList<SlotMask>(maskSet);
+		
+		MoveList[] results = new MoveList[distinctHands.size()];
+		Thread thread = Thread.currentThread();
+		
+		for(int from = 0; from < distinctHands.size(); from += HAND_GROUP_SIZE) {
+			
+			Hand[] group = distinctHands.subList(from, Math.min(from + HAND_GROUP_SIZE, distinctHands.size())).toArray(new Hand[0]);
+			
+			ArrayList<HashMap<SlotMask, WordDictionary.Selection>> doableWords = new ArrayList<HashMap<SlotMask, WordDictionary.Selection>>();
+			for(int i = 0; i < group.length; ++i)
+				doableWords.add(new HashMap<SlotMask, WordDictionary.Selection>());
+			
+			// Cancelled searches return before they look at any doable words
+			if(!thread.isInterrupted()) {
+				
+				WordDictionary.Selection[][] maskWords = new WordDictionary.Selection[masks.size()][];
+				
+				if(pool == null) {
+					
+					for(int i = 0; i < maskWords.length; ++i)
+						maskWords[i] = masks.get(i).findDoableWords(group, dictionary);
+					
+				} else {
+					
+					ArrayList<DoableWordsTask> tasks = new ArrayList<DoableWordsTask>();
+					
+					for(int i = 0; i < maskWords.length; i += DoableWordsTask.MASK_COUNT) {
+						
+						DoableWordsTask task = new DoableWordsTask(masks, i, Math.min(i + DoableWordsTask.MASK_COUNT, maskWords.length), group, dictionary, maskWords);
+						pool.execute(task);
+						tasks.add(task);
+						
+					}
+					
+					for(DoableWordsTask task : tasks)
+						task.join();
+					
+				}
+				
+				for(int i = 0; i < maskWords.length; ++i)
+					for(int j = 0; j < group.length; ++j)
+						doableWords.get(j).put(masks.get(i), maskWords[i][j]);
+				
+			}
+			
+			if(pool == null) {
+				
+				for(int i = 0; i < group.length; ++i)
+					results[from + i] = search(new Search(slots, group[i], dictionary, moveLimit, System.nanoTime(), -1, thread, null, null, doableWords.get(i)));
+				
+			} else {
+				
+				ArrayList<HandTask> tasks = new ArrayList<HandTask>();
+				
+				for(int i = 0; i < group.length; ++i) {
+					
+					HandTask task = new HandTask(slots, group[i], dictionary, moveLimit, thread, doableWords.get(i));
+					pool.execute(task);
+					tasks.add(task);
+					
+				}
+				
+				for(int i = 0; i < group.length; ++i)
+					results[from + i] = tasks.get(i).join();
+				
+			}
+			
+		}
+		
+		ArrayList<MoveList> handResults = new ArrayList<MoveList>(hands.size());
+		
+		for(Hand hand : hands)
+			handResults.add(results[handIndices.get(hand)]);
+		
+		return handResults;
+		
+	}
+	
+	// Streams out the results of the jobs in the order they come in
+	public Batch searchAll(Iterator<Job> jobs, WordDictionary dictionary) {
+		
+		if(jobs == null || dictionary == null) throw new NullPointerException();
+		return new Batch(jobs, dictionary);
+		
+	}
+	
+	// Searches the board the slots were last brought up to date with; the timeout is in
+	// nanoseconds from startTime, or negative to run to the end, and the search also stops
+	// early once cancelled is set, if given
+	MoveList search(BoardSlots slots, Hand hand, WordDictionary dictionary, int moveLimit, long startTime, long timeout, AtomicBoolean cancelled) {
+		
+		if(hand == null || dictionary == null) throw new NullPointerException();
+		if(moveLimit < 0) throw new IllegalArgumentException("Move limit cannot be negative.");
+		
+		return search(new Search(slots, hand, dictionary, moveLimit, startTime, timeout, Thread.currentThread(), cancelled, pool, null));
+		
+	}
+	
+	private static MoveList search(Search search) {
+		
+		// Taken out while in use, in case a thread joining a task starts another search
+		SingleTileMoves singleTileMoves = spareSingleTileMoves.get();
+		
+		if(singleTileMoves == null) singleTileMoves = new SingleTileMoves();
+		else spareSingleTileMoves.set(null);
+		
+		singleTileMoves.reset(search.board.getWidth(), search.board.getHeight());
+		
+		try {
+			
+			if(search.moveLimit > 0 || search.timed) return findBestMoves(search, singleTileMoves);
+			return findAllMoves(search, singleTileMoves);
+			
+		} finally {
+			spareSingleTileMoves.set(singleTileMoves);
+		}
+		
+	}
+	
+	private static MoveList findAllMoves(Search search, SingleTileMoves singleTileMoves) {
+		
+		ForkJoinPool pool = search.pool;
+		
+		MoveBuffer moves = new MoveBuffer(search.slots.getSlots());
+		
+		int slotCount = 0;
+		int slotsSearched = 0;
+		
+		for(int slotId = 0; slotId < moves.getSlotCount(); ++slotId)
+			if(isSearchable(search, moves, slotId)) ++slotCount;
+		
+		if(pool == null) {
+			
+			for(int slotId = 0; slotId < moves.getSlotCount(); ++slotId) {
+				
+				if(search.isCancelled()) return search.finish(moves, false, slotsSearched, slotCount);
+				
+				addMoves(search, slotId, singleTileMoves, moves);
+				if(isSearchable(search, moves, slotId)) ++slotsSearched;
+				
+			}
+			
+		} else {
+			
+			ArrayList<MoveTask> tasks = new ArrayList<MoveTask>();
+			
+			for(int from = 0; from < moves.getSlotCount(); from += MoveTask.SLOT_COUNT) {
+				
+				MoveTask task = new MoveTask(search, moves, from, Math.min(from + MoveTask.SLOT_COUNT, moves.getSlotCount()));
+				pool.execute(task);
+				tasks.add(task);
+				
+			}
+			
+			// Merge the buffers in slot order so that the same single tile moves are kept as
+			// in a sequential search
+			for(MoveTask task : tasks) {
+				
+				task.join();
+				
+				if(search.isCancelled()) return search.finish(moves, false, slotsSearched, slotCount);
+				
+				MoveBuffer taskMoves = task.moves;
+				
+				for(int i = 0; i < taskMoves.size(); ++i) {
+					
+					ComplexSlot slot = taskMoves.getSlot(taskMoves.getSlotId(i));
+					
+					if(taskMoves.getTilesUsed(i) > 1 || isNewSingleTileMove(singleTileMoves, slot, search.dictionary.getWord(slot.getLength(), taskMoves.getWordId(i)), taskMoves.getBlanks(i), taskMoves.getPosition(i)))
+						moves.add(taskMoves, i);
+					
+				}
+				
+				slotsSearched += task.slotsSearched;
+				
+			}
+			
+		}
+		
+		return search.finish(moves, true, slotsSearched, slotCount);
+		
+	}
+	
+	// Slots the hand can't fill, or that fit nowhere on the board, are left out of the counts
+	private static boolean isSearchable(Search search, MoveBuffer moves, int slotId) {
+		return moves.getSlot(slotId).getMainSlot().getEmptyCount() <= search.hand.getTileCount() && moves.getPositions(slotId).length > 0;
+	}
+	
+	private static boolean isNewSingleTileMove(SingleTileMoves singleTileMoves, ComplexSlot slot, String word, long blanks, Position position) {
+		
+		int firstEmpty = slot.getMainSlot().getMask().getFirstEmpty();
+		
+		int x = position.x;
+		int y = position.y;
+		
+		if(position.orientation == Position.HORIZONTAL)
+			x += firstEmpty;
+		else // VERTICAL
+			y += firstEmpty;
+		
+		return singleTileMoves.add(x, y, word.charAt(firstEmpty), (blanks & 1) != 0);
+		
+	}
+	
+	// Adds the moves for every position of the slot; single tile moves are only checked
+	// against the moves found so far if singleTileMoves is given
+	private static void addMoves(Search search, int slotId, SingleTileMoves singleTileMoves, MoveBuffer moves) {
+		
+		ComplexSlot slot = moves.getSlot(slotId);
+		Position[] positions = moves.getPositions(slotId);
+		int tilesUsed = slot.getMainSlot().getEmptyCount();
+		
+		PlayableWords playableWords = search.getPlayableWords(slot);
+		if(playableWords.size() == 0) return;
+		
+		// Work out once what each position scores, rather than for every word
+		ScoringKernel[] kernels = new ScoringKernel[positions.length];
+		for(int j = 0; j < positions.length; ++j)
+			kernels[j] = new ScoringKernel(slot, search.board, positions[j]);
+		
+		for(int i = 0; i < playableWords.size(); ++i) {
+			
+			int wordId = playableWords.getWordId(i);
+			long blanks = playableWords.getBlanks(i);
+			long blankable = playableWords.getBlankable(i);
+			String word = search.dictionary.getWord(slot.getLength(), wordId);
+			
+			for(int j = 0; j < positions.length; ++j) {
+				
+				Position position = positions[j];
+				
+				// Each word is played once per position, with its blanks wherever they score most
+				long bestBlanks = kernels[j].getBestBlanks(word, blanks, blankable);
+				
+				if(singleTileMoves != null && tilesUsed == 1 && !isNewSingleTileMove(singleTileMoves, slot, word, bestBlanks, position))
+					continue;
+				
+				int score = kernels[j].getScore(word, bestBlanks) + search.board.getBonus(tilesUsed, position);
+				moves.add(wordId, slotId, j, bestBlanks, score, tilesUsed);
+				
+			}
+			
+		}
+		
+	}
+	
+	// Visits the slots with the highest score bounds first and stops once no remaining slot can
+	// beat the lowest of the best moves found so far, or once the deadline has passed
+	private static MoveList findBestMoves(Search search, SingleTileMoves singleTileMoves) {
+		
+		int[] tileValues = new int[search.hand.getTileCount()];
+		int tileCount = 0;
+		
+		for(char letter = 'A'; letter <= 'Z'; ++letter)
+			for(int i = search.hand.getLetterCount(letter); i > 0; --i)
+				tileValues[tileCount++] = Tile.getLetter(letter).value;
+		
+		// Blanks are worth nothing and fill the rest
+		Arrays.sort(tileValues, 0, tileCount);
+		for(int i = 0, j = tileCount - 1; i < j; ++i, --j) {
+			
+			int value = tileValues[i];
+			tileValues[i] = tileValues[j];
+			tileValues[j] = value;
+			
+		}
+		
+		MoveBuffer moves = new MoveBuffer(search.slots.getSlots());
+		ArrayList<SlotBound> slotBounds = new ArrayList<SlotBound>();
+		
+		for(int slotId = 0; slotId < moves.getSlotCount(); ++slotId) {
+			
+			ComplexSlot slot = moves.getSlot(slotId);
+			Position[] positions = moves.getPositions(slotId);
+			
+			int tilesUsed = slot.getMainSlot().getEmptyCount();
+			if(!isSearchable(search, moves, slotId)) continue;
+			
+			ScoringKernel[] kernels = new ScoringKernel[positions.length];
+			int[] bounds = new int[positions.length];
+			int bestBound = -1;
+			
+			for(int i = 0; i < bounds.length; ++i) {
+				
+				Position position = positions[i];
+				
+				kernels[i] = new ScoringKernel(slot, search.board, position);
+				bounds[i] = kernels[i].getScoreBound(tileValues) + search.board.getBonus(tilesUsed, position);
+				bestBound = Math.max(bestBound, bounds[i]);
+				
+			}
+			
+			slotBounds.add(new SlotBound(slotId, kernels, bounds, bestBound));
+			
+		}
+		
+		Collections.sort(slotBounds);
+		
+		// Unlimited searches keep every move
+		BestMoves bestMoves = (search.moveLimit > 0) ? new BestMoves(moves, search.moveLimit) : null;
+		
+		boolean complete = true;
+		int slotsSearched = 0;
+		
+		slotLoop:
+		for(SlotBound slotBound : slotBounds) {
+			
+			if(bestMoves != null && bestMoves.isFull() && slotBound.bestBound <= bestMoves.getLowestScore()) break;
+			
+			if(search.isPastDeadline() || search.isCancelled()) {
+				
+				complete = false;
+				break;
+				
+			}
+			
+			++slotsSearched;
+			
+			int slotId = slotBound.slotId;
+			ComplexSlot slot = moves.getSlot(slotId);
+			Position[] positions = moves.getPositions(slotId);
+			int tilesUsed = slot.getMainSlot().getEmptyCount();
+			
+			PlayableWords playableWords = search.getPlayableWords(slot);
+			
+			for(int i = 0; i < playableWords.size(); ++i) {
+				
+				if(search.isPastDeadline() || search.isCancelled()) {
+					
+					complete = false;
+					break slotLoop;
+					
+				}
+				
+				int wordId = playableWords.getWordId(i);
+				long blanks = playableWords.getBlanks(i);
+				long blankable = playableWords.getBlankable(i);
+				String word = search.dictionary.getWord(slot.getLength(), wordId);
+				
+				for(int j = 0; j < positions.length; ++j) {
+					
+					if(bestMoves != null && bestMoves.isFull() && slotBound.bounds[j] <= bestMoves.getLowestScore()) continue;
+					
+					Position position = positions[j];
+					ScoringKernel kernel = slotBound.kernels[j];
+					long bestBlanks = kernel.getBestBlanks(word, blanks, blankable);
+					
+					if(tilesUsed == 1 && !isNewSingleTileMove(singleTileMoves, slot, word, bestBlanks, position))
+						continue;
+					
+					int score = kernel.getScore(word, bestBlanks) + search.board.getBonus(tilesUsed, position);
+					
+					if(bestMoves == null) moves.add(wordId, slotId, j, bestBlanks, score, tilesUsed);
+					else bestMoves.offer(wordId, slotId, j, bestBlanks, score, tilesUsed);
+					
+				}
+				
+			}
+			
+		}
+		
+		if(bestMoves != null) moves.sortByScore();
+		
+		return search.finish(moves, complete, slotsSearched, slotBounds.size());
+		
+	}
+	
+	public final static class Job {
+		
+		public final BoardSnapshot board;
+		public final Hand hand;
+		
+		public Job(BoardSnapshot board, Hand hand) {
+			
+			if(board == null || hand == null) throw new NullPointerException();
+			
+			this.board = board;
+			this.hand = hand;
+			
+		}
+		
+	}
+	
+	public final class Batch implements Iterator<MoveList> {
+		
+		private final Iterator<Job> jobs;
+		private final WordDictionary dictionary;
+		private final long startTime;
+		private long positionCount;
+		
+		// Kept across batches, so slots that stay on the boards keep their cached words
+		private BoardSlots slots;
+		
+		private MoveList[] results = new MoveList[0];
+		private int next;
+		
+		private Batch(Iterator<Job> jobs, WordDictionary dictionary) {
+			
+			this.jobs = jobs;
+			this.dictionary = dictionary;
+			this.startTime = System.nanoTime();
+			
+		}
+		
+		@Override
+		public boolean hasNext() {
+			return next < results.length || jobs.hasNext();
+		}
+		
+		@Override
+		public MoveList next() {
+			
+			if(next == results.length) searchBatch();
+			if(next == results.length) throw new NoSuchElementException();
+			
+			return results[next++];
+			
+		}
+		
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+		
+		// Positions searched so far, counting ones read ahead
+		public long getPositionCount() {
+			return positionCount;
+		}
+		
+		public long getElapsedNanos() {
+			return System.nanoTime() - startTime;
+		}
+		
+		public double getPositionsPerSecond() {
+			
+			long elapsedNanos = getElapsedNanos();
+			return (elapsedNanos == 0) ? 0 : positionCount * 1e9 / elapsedNanos;
+			
+		}
+		
+		private void searchBatch() {
+			
+			ArrayList<Job> batch = new ArrayList<Job>();
+			while(batch.size() < BATCH_SIZE && jobs.hasNext()) batch.add(jobs.next());
+			
+			// Group the jobs by board, in the order each board first came in
+			LinkedHashMap<BoardSnapshot, ArrayList<Integer>> groups = new LinkedHashMap<BoardSnapshot, ArrayList<Integer>>();
+			
+			for(int i = 0; i < batch.size(); ++i) {
+				
+				ArrayList<Integer> group = groups.get(batch.get(i).board);
+				
+				if(group == null) {
+					
+					group = new ArrayList<Integer>();
+					groups.put(batch.get(i).board, group);
+					
+				}
+				
+				group.add(i);
+				
+			}
+			
+			results = new MoveList[batch.size()];
+			next = 0;
+			
+			for(Map.Entry<BoardSnapshot, ArrayList<Integer>> group : groups.entrySet()) {
+				
+				BoardSnapshot board = group.getKey();
+				
+				if(slots == null || slots.getBoard().getWidth() != board.getWidth() || slots.getBoard().getHeight() != board.getHeight())
+					slots = new BoardSlots(BATCH_KEEP_LIMIT);
+				
+				slots.update(board);
+				
+				// The same hand on the same board finds the same moves
+				HashMap<Hand, MoveList> handResults = new HashMap<Hand, MoveList>();
+				
+				for(int index : group.getValue()) {
+					
+					Hand hand = batch.get(index).hand;
+					MoveList moves = handResults.get(hand);
+					
+					if(moves == null) {
+						
+						moves = search(slots, hand, dictionary, 0, System.nanoTime(), -1, null);
+						handResults.put(hand, moves);
+						
+					}
+					
+					results[index] = moves;
+					
+				}
+				
+			}
+			
+			positionCount += batch.size();
+			
+		}
+		
+	}
+	
+	private final static class Search {
+		
+		public final BoardSlots slots;
+		public final BoardSnapshot board;
+		public final Hand hand;
+		public final WordDictionary dictionary;
+		public final int moveLimit;
+		public final boolean timed;
+		public final long startTime;
+		public final long deadline;
+		public final Thread thread;
+		public final AtomicBoolean cancelled;
+		public final ForkJoinPool pool;
+		public final Map<SlotMask, WordDictionary.Selection> doableWords;
+		
+		// A negative timeout means the search runs to the end. The slots are split across the
+		// pool if given, and the hand's doable words are taken from doableWords if given rather
+		// than from the slots' caches
+		public Search(BoardSlots slots, Hand hand, WordDictionary dictionary, int moveLimit, long startTime, long timeout, Thread thread, AtomicBoolean cancelled, ForkJoinPool pool, Map<SlotMask, WordDictionary.Selection> doableWords) {
+			
+			this.slots = slots;
+			this.board = slots.getBoard();
+			this.hand = hand;
+			this.dictionary = dictionary;
+			this.moveLimit = moveLimit;
+			
+			timed = timeout >= 0;
+			this.startTime = startTime;
+			deadline = startTime + Math.max(timeout, 0);
+			
+			this.thread = thread;
+			this.cancelled = cancelled;
+			this.pool = pool;
+			this.doableWords = doableWords;
+			
+		}
+		
+		public PlayableWords getPlayableWords(ComplexSlot slot) {
+			
+			if(doableWords == null) return slot.getPlayableWords(dictionary, hand);
+			return slot.findPlayableWords(dictionary, hand, doableWords.get(slot.getMainSlot().getMask()));
+			
+		}
+		
+		public boolean isPastDeadline() {
+			return timed && System.nanoTime() - deadline >= 0;
+		}
+		
+		// Pool threads check the thread that started the search
+		public boolean isCancelled() {
+			return thread.isInterrupted() || (cancelled != null && cancelled.get());
+		}
+		
+		public MoveList finish(MoveBuffer moves, boolean complete, int slotsSearched, int slotCount) {
+			return new MoveList(moves, board, hand, dictionary, complete, slotsSearched, slotCount, System.nanoTime() - startTime);
+		}
+		
+	}
+	
+	private final static class SlotBound implements Comparable<SlotBound> {
+		
+		public final int slotId;
+		public final ScoringKernel[] kernels; // one per position
+		public final int[] bounds;
+		public final int bestBound;
+		
+		public SlotBound(int slotId, ScoringKernel[] kernels, int[] bounds, int bestBound) {
+			
+			this.slotId = slotId;
+			this.kernels = kernels;
+			this.bounds = bounds;
+			this.bestBound = bestBound;
+			
+		}
+		
+		@Override
+		public int compareTo(SlotBound o) {
+			return Integer.compare(o.bestBound, bestBound);
+		}
+		
+	}
+	
+	// Finds the doable words for a run of masks for every hand of a group
+	private final static class DoableWordsTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		public static final int MASK_COUNT = 4;
+		
+		private final List<SlotMask> masks;
+		private final int from;
+		private final int to;
+		private final Hand[] hands;
+		private final WordDictionary dictionary;
+		private final WordDictionary.Selection[][] maskWords;
+		
+		public DoableWordsTask(List<SlotMask> masks, int from, int to, Hand[] hands, WordDictionary dictionary, WordDictionary.Selection[][] maskWords) {
+			
+			this.masks = masks;
+			this.from = from;
+			this.to = to;
+			this.hands = hands;
+			this.dictionary = dictionary;
+			this.maskWords = maskWords;
+			
+		}
+		
+		@Override
+		protected void compute() {
+			
+			for(int i = from; i < to; ++i)
+				maskWords[i] = masks.get(i).findDoableWords(hands, dictionary);
+			
+		}
+		
+	}
+	
+	// Searches the slots for one hand of a multi-hand search
+	private final static class HandTask extends RecursiveTask<MoveList> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final BoardSlots slots;
+		private final Hand hand;
+		private final WordDictionary dictionary;
+		private final int moveLimit;
+		private final Thread thread;
+		private final Map<SlotMask, WordDictionary.Selection> doableWords;
+		
+		public HandTask(BoardSlots slots, Hand hand, WordDictionary dictionary, int moveLimit, Thread thread, Map<SlotMask, WordDictionary.Selection> doableWords) {
+			
+			this.slots = slots;
+			this.hand = hand;
+			this.dictionary = dictionary;
+			this.moveLimit = moveLimit;
+			this.thread = thread;
+			this.doableWords = doableWords;
+			
+		}
+		
+		@Override
+		protected MoveList compute() {
+			return search(new Search(slots, hand, dictionary, moveLimit, System.nanoTime(), -1, thread, null, null, doableWords));
+		}
+		
+	}
+	
+	// Finds the moves for a run of slots into its own buffer
+	private final static class MoveTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		public static final int SLOT_COUNT = 16;
+		
+		private final Search search;
+		private final int from;
+		private final int to;
+		public final MoveBuffer moves;
+		public int slotsSearched;
+		
+		// Slots are numbered by the given buffer's table
+		public MoveTask(Search search, MoveBuffer table, int from, int to) {
+			
+			this.search = search;
+			this.from = from;
+			this.to = to;
+			this.moves = new MoveBuffer(table);
+			
+		}
+		
+		@Override
+		protected void compute() {
+			
+			for(int slotId = from; slotId < to; ++slotId) {
+				
+				if(search.isCancelled()) return;
+				
+				addMoves(search, slotId, null, moves);
+				if(isSearchable(search, moves, slotId)) ++slotsSearched;
+				
+			}
+			
+		}
+		
+	}
+	
+	// The best moves found so far by a limited search, kept as a heap of rows in the buffer with
+	// the lowest score at the root
+	private final static class BestMoves {
+		
+		private final MoveBuffer moves;
+		private final int[] rows;
+		private int size;
+		
+		public BestMoves(MoveBuffer moves, int moveLimit) {
+			
+			this.moves = moves;
+			this.rows = new int[moveLimit];
+			
+		}
+		
+		public boolean isFull() {
+			return size == rows.length;
+		}
+		
+		public int getLowestScore() {
+			return moves.getScore(rows[0]);
+		}
+		
+		public void offer(int wordId, int slotId, int positionIndex, long blanks, int score, int tilesUsed) {
+			
+			// Fill up, then only replace the lowest scoring move
+			if(!isFull()) {
+				
+				int index = size++;
+				rows[index] = moves.size();
+				moves.add(wordId, slotId, positionIndex, blanks, score, tilesUsed);
+				
+				for(int parent; index > 0 && score < moves.getScore(rows[parent = (index - 1) / 2]); index = parent) {
+					
+					int row = rows[index];
+					rows[index] = rows[parent];
+					rows[parent] = row;
+					
+				}
+				
+				return;
+				
+			}
+			
+			if(score <= getLowestScore()) return;
+			
+			moves.set(rows[0], wordId, slotId, positionIndex, blanks, score, tilesUsed);
+			
+			for(int index = 0; ; ) {
+				
+				int child = index * 2 + 1;
+				if(child >= size) break;
+				
+				if(child + 1 < size && moves.getScore(rows[child + 1]) < moves.getScore(rows[child])) ++child;
+				if(moves.getScore(rows[child]) >= score) break;
+				
+				int row = rows[index];
+				rows[index] = rows[child];
+				rows[child] = row;
+				index = child;
+				
+			}
+			
+		}
+		
+	}
+	
+}
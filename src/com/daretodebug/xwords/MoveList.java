@@ -0,0 +1,113 @@
+package com.daretodebug.xwords;
+
+import java.util.*;
+
+import com.daretodebug.xwords.BoardModel.Move;
+
+// The moves found by a search, highest score first if the search had a move limit. Moves are
+// only made as objects once asked for; their scores and tiles used can be read without that.
+// Each move asked for still costs a Move, an UnpositionedMove and its arrays of tiles and
+// attached words, which are kept for later calls.
+// Each word is listed once at each position, with the hand's blanks where they score the most;
+// the other ways of placing them can be asked for
+public final class MoveList extends AbstractList<Move> implements RandomAccess {
+	
+	private final MoveBuffer moves;
+	private final BoardSnapshot board;
+	private final Hand hand;
+	private final WordDictionary dictionary;
+	private final boolean complete;
+	private final int slotsSearched;
+	private final int slotCount;
+	private final long elapsedNanos;
+	
+	private Move[] madeMoves;
+	
+	MoveList(MoveBuffer moves, BoardSnapshot board, Hand hand, WordDictionary dictionary, boolean complete, int slotsSearched, int slotCount, long elapsedNanos) {
+		
+		this.moves = moves;
+		this.board = board;
+		this.hand = hand;
+		this.dictionary = dictionary;
+		this.complete = complete;
+		this.slotsSearched = slotsSearched;
+		this.slotCount = slotCount;
+		this.elapsedNanos = elapsedNanos;
+		
+	}
+	
+	// A complete list of no moves
+	MoveList(long elapsedNanos) {
+		this(new MoveBuffer(Collections.<AbstractMap.SimpleEntry<BoardModel.ComplexSlot, ArrayList<BoardModel.Position>>>emptyList()), null, null, null, true, 0, 0, elapsedNanos);
+	}
+	
+	@Override
+	public synchronized Move get(int index) {
+		
+		if(index < 0 || index >= moves.size()) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + moves.size());
+		
+		if(madeMoves == null) madeMoves = new Move[moves.size()];
+		
+		Move move = madeMoves[index];
+		if(move == null) madeMoves[index] = move = moves.createMove(index, board, dictionary);
+		
+		return move;
+		
+	}
+	
+	@Override
+	public int size() {
+		return moves.size();
+	}
+	
+	public int getScore(int index) {
+		
+		if(index < 0 || index >= moves.size()) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + moves.size());
+		return moves.getScore(index);
+		
+	}
+	
+	public int getTilesUsed(int index) {
+		
+		if(index < 0 || index >= moves.size()) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + moves.size());
+		return moves.getTilesUsed(index);
+		
+	}
+	
+	// Every way the hand could play the move's word at its position, blanks and all, real
+	// tiles before blanks; the move itself is among them
+	public List<Move> getBlankVariants(int index) {
+		
+		if(index < 0 || index >= moves.size()) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + moves.size());
+		
+		BoardModel.ComplexSlot slot = moves.getSlot(moves.getSlotId(index));
+		BoardModel.PlayableWords choices = slot.getBlankChoices(dictionary, hand, moves.getWordId(index));
+		
+		ArrayList<Move> variants = new ArrayList<Move>(choices.size());
+		
+		for(int i = 0; i < choices.size(); ++i)
+			variants.add(slot.createMove(dictionary, choices.getWordId(i), choices.getBlanks(i)).position(board, moves.getPosition(index)));
+		
+		return variants;
+		
+	}
+	
+	// Whether these are all of the moves, or the best ones if the search was limited
+	public boolean isComplete() {
+		return complete;
+	}
+	
+	public int getSlotsSearched() {
+		return slotsSearched;
+	}
+	
+	// Slots that the hand has enough tiles to play in
+	public int getSlotCount() {
+		return slotCount;
+	}
+	
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+	
+}
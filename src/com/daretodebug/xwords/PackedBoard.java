@@ -0,0 +1,343 @@
+package com.daretodebug.xwords;
+
+import java.util.*;
+
+// The tiles of a board packed one byte to a square: zero for an empty square, otherwise the
+// letter's number counting from one, with BLANK set for blank tiles. The squares are kept both
+// row by row and column by column so either kind of line can be read straight through, and the
+// squares next to a tile or where play can start are kept as a bitboard, row by row.
+// Snapshots share the arrays, so taking one costs nothing; the board copies them the first time
+// it changes after a snapshot has been taken. Snapshots can be taken on any thread while another
+// changes the board, but the board should otherwise only be read by the thread changing it.
+// The board notes which lines each change touches, so a later snapshot can tell which lines
+// differ from an earlier one without comparing every square
+final class PackedBoard {
+	
+	public static final int BLANK = 0x20;
+	public static final int LETTER_MASK = 0x1F;
+	
+	private static final Tile[] TILES = new Tile[BLANK << 1];
+	
+	static {
+		
+		for(Tile tile : Tile.values())
+			TILES[encode(tile)] = tile;
+		
+	}
+	
+	private final int width;
+	private final int height;
+	private final boolean readonly;
+	private final long[] startingIntersections;
+	
+	private byte[] rowCells;
+	private byte[] columnCells;
+	private long[] intersections;
+	private boolean shared;
+	private Changes changes;
+	
+	public PackedBoard(int width, int height, TileCoords[] startingPoints) {
+		
+		this.width = width;
+		this.height = height;
+		this.readonly = false;
+		
+		rowCells = new byte[width * height];
+		columnCells = new byte[width * height];
+		intersections = new long[WordBitmap.getLongCount(width * height)];
+		
+		startingIntersections = new long[intersections.length];
+		for(TileCoords coords : startingPoints)
+			setBit(startingIntersections, coords.y * width + coords.x);
+		
+		System.arraycopy(startingIntersections, 0, intersections, 0, intersections.length);
+		
+		changes = new Changes(width, height);
+		
+	}
+	
+	// A board holding the given tiles, laid out as columns
+	public PackedBoard(Tile[][] columns, TileCoords[] startingPoints) {
+		
+		this(columns.length, columns[0].length, startingPoints);
+		
+		for(int x = 0; x < width; ++x)
+			for(int y = 0; y < height; ++y) {
+				
+				byte code = encode(columns[x][y]);
+				
+				rowCells[y * width + x] = code;
+				columnCells[x * height + y] = code;
+				
+			}
+		
+		for(int x = 0; x < width; ++x)
+			for(int y = 0; y < height; ++y)
+				if(hasNeighbour(x, y)) setBit(intersections, y * width + x);
+		
+	}
+	
+	private PackedBoard(PackedBoard board) {
+		
+		this.width = board.width;
+		this.height = board.height;
+		this.readonly = true;
+		this.startingIntersections = board.startingIntersections;
+		
+		this.rowCells = board.rowCells;
+		this.columnCells = board.columnCells;
+		this.intersections = board.intersections;
+		this.shared = true;
+		this.changes = board.changes;
+		
+	}
+	
+	public static byte encode(Tile tile) {
+		
+		if(tile == null) return 0;
+		return (byte) ((tile.letter - 'A' + 1) | (tile.isBlank() ? BLANK : 0));
+		
+	}
+	
+	public static Tile decode(int code) {
+		return TILES[code];
+	}
+	
+	// A read-only copy of the board as it is now
+	public synchronized PackedBoard snapshot() {
+		
+		if(readonly) return this;
+		
+		// Changes from here on are noted apart from those before, which link to them
+		if(!shared) {
+			
+			Changes next = new Changes(width, height);
+			changes.next = next;
+			changes = next;
+			
+			shared = true;
+			
+		}
+		
+		return new PackedBoard(this);
+		
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public int getHeight() {
+		return height;
+	}
+	
+	public int getCode(int x, int y) {
+		return rowCells[y * width + x];
+	}
+	
+	public Tile getTile(int x, int y) {
+		return TILES[rowCells[y * width + x]];
+	}
+	
+	public boolean isIntersection(int x, int y) {
+		return getBit(intersections, y * width + x);
+	}
+	
+	public boolean hasSameTiles(PackedBoard board) {
+		return width == board.width && height == board.height && Arrays.equals(rowCells, board.rowCells);
+	}
+	
+	public int hashTiles() {
+		return Arrays.hashCode(rowCells);
+	}
+	
+	public void getRow(int y, Tile[] row) {
+		
+		int offset = y * width;
+		
+		for(int x = 0; x < width; ++x)
+			row[x] = TILES[rowCells[offset + x]];
+		
+	}
+	
+	public void getColumn(int x, Tile[] column) {
+		
+		int offset = x * height;
+		
+		for(int y = 0; y < height; ++y)
+			column[y] = TILES[columnCells[offset + y]];
+		
+	}
+	
+	public boolean rowContainsIntersection(int y, int startPoint, int endPoint) {
+		
+		int from = y * width + startPoint;
+		int to = y * width + endPoint;
+		
+		for(int i = from; i < to; ) {
+			
+			long word = intersections[i >>> 6] >>> (i & 63);
+			int bits = Math.min(64 - (i & 63), to - i);
+			
+			if(bits < 64) word &= (1L << bits) - 1;
+			if(word != 0) return true;
+			
+			i += bits;
+			
+		}
+		
+		return false;
+		
+	}
+	
+	public boolean columnContainsIntersection(int x, int startPoint, int endPoint) {
+		
+		for(int y = startPoint; y < endPoint; ++y)
+			if(getBit(intersections, y * width + x)) return true;
+		
+		return false;
+		
+	}
+	
+	// Returns whether the square changed
+	public synchronized boolean setTile(int x, int y, Tile tile) {
+		
+		if(readonly) throw new UnsupportedOperationException("Board snapshots cannot be changed.");
+		
+		byte code = encode(tile);
+		byte oldCode = rowCells[y * width + x];
+		
+		if(code == oldCode) return false;
+		
+		if(shared) {
+			
+			rowCells = rowCells.clone();
+			columnCells = columnCells.clone();
+			intersections = intersections.clone();
+			
+			shared = false;
+			
+		}
+		
+		rowCells[y * width + x] = code;
+		columnCells[x * height + y] = code;
+		
+		markChangedLines(x, y);
+		
+		// Squares next to a removed tile stay intersection points only if they still touch a
+		// tile or play can start there; squares next to a new tile always are
+		if(code == 0) {
+			
+			if(x > 0) updateIntersection(x - 1, y);
+			if(x + 1 < width) updateIntersection(x + 1, y);
+			if(y > 0) updateIntersection(x, y - 1);
+			if(y + 1 < height) updateIntersection(x, y + 1);
+			
+		} else if(oldCode == 0) {
+			
+			if(x > 0) setBit(intersections, y * width + x - 1);
+			if(x + 1 < width) setBit(intersections, y * width + x + 1);
+			if(y > 0) setBit(intersections, (y - 1) * width + x);
+			if(y + 1 < height) setBit(intersections, (y + 1) * width + x);
+			
+		}
+		
+		return true;
+		
+	}
+	
+	// Marks the lines whose slots a change to the square may affect: its own row and column,
+	// and the crossing lines along the run of tiles through it plus one square either side,
+	// since their attached slots and intersection points span it. That also covers the
+	// squares next to it, whose intersection points may have changed
+	private void markChangedLines(int x, int y) {
+		
+		int start = x;
+		while(start > 0 && rowCells[y * width + start - 1] != 0) --start;
+		
+		int end = x;
+		while(end + 1 < width && rowCells[y * width + end + 1] != 0) ++end;
+		
+		for(int i = Math.max(start - 1, 0); i <= Math.min(end + 1, width - 1); ++i)
+			setBit(changes.columns, i);
+		
+		start = y;
+		while(start > 0 && columnCells[x * height + start - 1] != 0) --start;
+		
+		end = y;
+		while(end + 1 < height && columnCells[x * height + end + 1] != 0) ++end;
+		
+		for(int i = Math.max(start - 1, 0); i <= Math.min(end + 1, height - 1); ++i)
+			setBit(changes.rows, i);
+		
+	}
+	
+	// Marks the lines whose slots may differ between the given earlier snapshot of this board
+	// and this one. Returns false, marking nothing, if the given board isn't an earlier
+	// snapshot of the same board
+	public boolean findChangedLines(PackedBoard previous, boolean[] changedRows, boolean[] changedColumns) {
+		
+		Changes last = changes;
+		
+		for(Changes c = previous.changes; c != last; c = c.next)
+			if(c == null) return false;
+		
+		for(Changes c = previous.changes; c != last; c = c.next) {
+			
+			for(int y = 0; y < height; ++y)
+				if(getBit(c.rows, y)) changedRows[y] = true;
+			
+			for(int x = 0; x < width; ++x)
+				if(getBit(c.columns, x)) changedColumns[x] = true;
+			
+		}
+		
+		return true;
+		
+	}
+	
+	private void updateIntersection(int x, int y) {
+		
+		int index = y * width + x;
+		
+		if(hasNeighbour(x, y) || getBit(startingIntersections, index)) setBit(intersections, index);
+		else intersections[index >>> 6] &= ~(1L << index);
+		
+	}
+	
+	private boolean hasNeighbour(int x, int y) {
+		
+		int index = y * width + x;
+		
+		return (x > 0 && rowCells[index - 1] != 0)
+			|| (x + 1 < width && rowCells[index + 1] != 0)
+			|| (y > 0 && rowCells[index - width] != 0)
+			|| (y + 1 < height && rowCells[index + width] != 0);
+		
+	}
+	
+	private static boolean getBit(long[] bits, int index) {
+		return (bits[index >>> 6] & (1L << index)) != 0;
+	}
+	
+	private static void setBit(long[] bits, int index) {
+		bits[index >>> 6] |= 1L << index;
+	}
+	
+	// The lines changed between one snapshot of a board and the next, which it links to
+	private static final class Changes {
+		
+		public final long[] rows;
+		public final long[] columns;
+		public Changes next;
+		
+		public Changes(int width, int height) {
+			
+			rows = new long[WordBitmap.getLongCount(height)];
+			columns = new long[WordBitmap.getLongCount(width)];
+			
+		}
+		
+	}
+	
+}
@@ -2,6 +2,7 @@ package com.daretodebug.xwords;
 
 import java.awt.*;
 import java.io.*;
+import java.util.concurrent.*;
 import java.util.prefs.*;
 import javax.swing.*;
 
@@ -63,14 +64,9 @@ public class Program {
 		
 		for(;;) {
 			
-			FileInputStream fis = null;
-			
 			try {
 				
-				fis = new FileInputStream(path);
-				InputStreamReader reader = new InputStreamReader(fis);
-				
-				WordDictionary dictionary = new WordDictionary(new ReaderLineIterator(reader));
+				WordDictionary dictionary = readDictionary(path);
 				saveDictionaryPath(path);
 				return dictionary;
 				
@@ -107,18 +103,64 @@ public class Program {
 					
 				}
 				
-			} finally {
-				
-				if(fis != null) try {
-					fis.close();
-				} catch(Exception e) {}
-				
 			}
 			
 		}
 		
 	}
 	
+	public static File getIndexFile(File wordList) {
+		return new File(wordList.getPath() + ".xidx");
+	}
+	
+	public static WordDictionary readDictionary(String path) throws IOException {
+		
+		File file = new File(path);
+		
+		// A compiled index can be chosen directly in place of a word list
+		if(DictionaryIndex.isIndexFile(file)) return WordDictionary.open(file);
+		
+		File indexFile = getIndexFile(file);
+		
+		if(indexFile.isFile()) {
+			
+			try {
+				return WordDictionary.open(indexFile, file);
+			} catch(IOException e) {} // Stale or damaged index, fall back to the word list
+			
+		}
+		
+		WordDictionary dictionary = readWordList(file);
+		
+		try {
+			dictionary.save(indexFile, file);
+		} catch(IOException e) {}
+		
+		return dictionary;
+		
+	}
+	
+	public static WordDictionary readWordList(File file) throws IOException {
+		
+		FileInputStream fis = null;
+		
+		try {
+			
+			fis = new FileInputStream(file);
+			InputStreamReader reader = new InputStreamReader(fis);
+			
+			return new WordDictionary(new ReaderLineIterator(reader), ForkJoinPool.commonPool());
+			
+		} finally {
+			
+			if(fis != null) try {
+				fis.close();
+			} catch(Exception e) {}
+			
+		}
+		
+	}
+	
 	public static void swingMain() {
 		
 		try {
@@ -155,7 +197,8 @@ public class Program {
 			parent,
 			"Dictionary Files:\n" +
 			"Dictionaries must be simple text files with one word per line and no extraneous\n" +
-			"characters.  Case is ignored.\n\n" +
+			"characters.  Case is ignored.  A compiled index (.xidx) is saved next to the\n" +
+			"word list so that later starts load much faster.\n\n" +
 			"Board Usage:\n" +
 			"To set a tile on the board, simply click on the board in the space where you\n" +
 			"would like to change a tile.  Enter normal tiles as lower case and blank tiles\n" +
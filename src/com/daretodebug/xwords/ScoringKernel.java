@@ -0,0 +1,194 @@
+package com.daretodebug.xwords;
+
+import java.util.*;
+
+import com.daretodebug.xwords.BoardModel.*;
+
+// What a slot at one position scores, worked out once from the board so moves can be scored
+// without looking at it again. A tile placed on an open square counts toward the main word,
+// times the main word's multiplier, and toward its attached word if there is one, times that
+// square's word multiplier; so a move scores the fixed part plus each placed tile's value
+// times its square's weight
+final class ScoringKernel {
+	
+	private static final int[] LETTER_VALUES = new int[26];
+	
+	static {
+		
+		for(char letter = 'A'; letter <= 'Z'; ++letter)
+			LETTER_VALUES[letter - 'A'] = Tile.getLetter(letter).value;
+		
+	}
+	
+	private final int fixedScore;
+	private final int[] offsets; // index in the word of each open square
+	private final int[] weights;
+	
+	public ScoringKernel(ComplexSlot slot, BoardModel board, Position position) {
+		
+		int length = slot.getLength();
+		
+		if(position.orientation == Position.HORIZONTAL) {
+			
+			if(position.y < 0 || position.y >= board.getHeight())
+				throw new IllegalArgumentException("Y must be within the board's bounds.");
+			
+			if(position.x < 0 || position.x + length > board.getWidth())
+				throw new IllegalArgumentException("X must be within the board's bounds and have enough space following it for this move.");
+			
+		} else { // VERTICAL
+			
+			if(position.x < 0 || position.x >= board.getWidth())
+				throw new IllegalArgumentException("X must be within the board's bounds.");
+			
+			if(position.y < 0 || position.y + length > board.getHeight())
+				throw new IllegalArgumentException("Y must be within the board's bounds and have enough space following it for this move.");
+			
+		}
+		
+		SimpleSlot mainSlot = slot.getMainSlot();
+		int emptyCount = mainSlot.getEmptyCount();
+		
+		offsets = new int[emptyCount];
+		weights = new int[emptyCount];
+		
+		int[] attachedMultipliers = new int[emptyCount];
+		
+		int fixedScore = 0;
+		int mult = 1;
+		int totalAttached = 0;
+		int empty = 0;
+		
+		for(int i = 0; i < length; ++i) {
+			
+			int x = position.x;
+			int y = position.y;
+			
+			if(position.orientation == Position.HORIZONTAL)
+				x += i;
+			else // VERTICAL
+				y += i;
+			
+			if(mainSlot.getLetter(i) != 0) {
+				
+				fixedScore += board.getTileAt(x, y).value;
+				continue;
+				
+			}
+			
+			BoardTileData data = board.getTileDataAt(x, y);
+			
+			mult *= data.getWordMultiplier();
+			offsets[empty] = i;
+			
+			// Letter multipliers for now; the weights are finished once the word multiplier is known
+			weights[empty] = data.getLetterMultiplier();
+			
+			SimpleSlot attachedSlot = slot.getAttachedSlot(i);
+			if(attachedSlot != null) {
+				
+				int attachedScore = 0;
+				int slotOffset = ((position.orientation == Position.HORIZONTAL) ? y : x) - attachedSlot.getMask().getFirstEmpty();
+				
+				for(int j = 0; j < attachedSlot.getLength(); ++j) {
+					
+					Tile attachedTile = (position.orientation == Position.HORIZONTAL) ?
+						board.getTileAt(x, slotOffset + j) : board.getTileAt(slotOffset + j, y);
+					
+					if(attachedTile != null)
+						attachedScore += attachedTile.value;
+					
+				}
+				
+				totalAttached += attachedScore * data.getWordMultiplier();
+				attachedMultipliers[empty] = data.getWordMultiplier();
+				
+			}
+			
+			++empty;
+			
+		}
+		
+		for(int i = 0; i < emptyCount; ++i)
+			weights[i] *= mult + attachedMultipliers[i];
+		
+		this.fixedScore = fixedScore * mult + totalAttached;
+		
+	}
+	
+	// Score before bonuses of playing the word; bit k of blanks is set if the k-th open square
+	// takes a blank
+	public int getScore(String word, long blanks) {
+		
+		int score = fixedScore;
+		
+		for(int i = 0; i < offsets.length; ++i)
+			if((blanks & (1L << i)) == 0)
+				score += LETTER_VALUES[word.charAt(offsets[i]) - 'A'] * weights[i];
+		
+		return score;
+		
+	}
+	
+	// Where the blanks score the most, keeping as many on each letter as the given placement
+	// has but moving them among the blankable squares with that letter; they go on the squares
+	// that weigh the least, and on later squares where they weigh the same
+	public long getBestBlanks(String word, long blanks, long blankable) {
+		
+		if(blanks == blankable) return blanks;
+		
+		long bestBlanks = 0;
+		
+		for(long remaining = blankable; remaining != 0; ) {
+			
+			char letter = word.charAt(offsets[Long.numberOfTrailingZeros(remaining)]);
+			long squares = 0;
+			
+			for(long bits = remaining; bits != 0; bits &= bits - 1) {
+				
+				int square = Long.numberOfTrailingZeros(bits);
+				if(word.charAt(offsets[square]) == letter) squares |= 1L << square;
+				
+			}
+			
+			remaining &= ~squares;
+			
+			for(int count = Long.bitCount(blanks & squares); count > 0; --count) {
+				
+				int lightest = -1;
+				
+				for(long bits = squares; bits != 0; bits &= bits - 1) {
+					
+					int square = Long.numberOfTrailingZeros(bits);
+					if(lightest < 0 || weights[square] <= weights[lightest]) lightest = square;
+					
+				}
+				
+				bestBlanks |= 1L << lightest;
+				squares &= ~(1L << lightest);
+				
+			}
+			
+		}
+		
+		return bestBlanks;
+		
+	}
+	
+	// Highest score before bonuses that any word could make, putting the highest values on the
+	// squares that weigh the most; tileValues must be sorted highest first and hold at least one
+	// value for each open square
+	public int getScoreBound(int[] tileValues) {
+		
+		int[] weights = this.weights.clone();
+		Arrays.sort(weights);
+		
+		int score = fixedScore;
+		for(int i = 0; i < weights.length; ++i)
+			score += weights[weights.length - 1 - i] * tileValues[i];
+		
+		return score;
+		
+	}
+	
+}
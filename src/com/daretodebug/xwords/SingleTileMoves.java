@@ -0,0 +1,54 @@
+package com.daretodebug.xwords;
+
+// The one tile plays a search has found, so each is only kept once even though it is found
+// both across and down. Each square has a mask of the tiles played there: bit n for the nth
+// letter and bit 26 + n for a blank playing it. The squares used are listed so that clearing
+// for the next search only visits those. Not thread safe
+final class SingleTileMoves {
+	
+	private int width;
+	private int height;
+	private long[] masks = new long[0];
+	private int[] touched = new int[0];
+	private int touchedCount;
+	
+	// Forgets every play and sizes the masks for the board
+	public void reset(int width, int height) {
+		
+		if(width * height != masks.length) {
+			
+			masks = new long[width * height];
+			touched = new int[width * height];
+			
+		} else {
+			
+			for(int i = 0; i < touchedCount; ++i)
+				masks[touched[i]] = 0;
+			
+		}
+		
+		this.width = width;
+		this.height = height;
+		touchedCount = 0;
+		
+	}
+	
+	// Whether the play hadn't been added yet
+	public boolean add(int x, int y, char letter, boolean blank) {
+		
+		if(x < 0 || x >= width || y < 0 || y >= height) throw new IndexOutOfBoundsException();
+		
+		int square = x * height + y;
+		long bit = 1L << ((letter - 'A') + (blank ? 26 : 0));
+		long mask = masks[square];
+		
+		if((mask & bit) != 0) return false;
+		
+		if(mask == 0) touched[touchedCount++] = square;
+		masks[square] = mask | bit;
+		
+		return true;
+		
+	}
+	
+}
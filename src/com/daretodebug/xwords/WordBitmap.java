@@ -0,0 +1,137 @@
+package com.daretodebug.xwords;
+
+abstract class WordBitmap {
+	
+	// Compact bitmaps take about twice as long to combine, so only the sparsest tables are kept
+	// compact.  See BitmapBenchmark
+	private static final int COMPACT_RATIO = 32;
+	private static final int INTERSECT_BLOCK = 512;
+	
+	public static int getLongCount(int size) {
+		return (size + 63) >>> 6;
+	}
+	
+	public static WordBitmap of(long[] words, int size) {
+		
+		if(CompactWordBitmap.getCompactSize(words, size) * COMPACT_RATIO < DenseWordBitmap.getDenseSize(size))
+			return CompactWordBitmap.of(words, size);
+		
+		return new DenseWordBitmap(words, size);
+		
+	}
+	
+	// Intersects all of the operands into result, which must be a fresh zeroed array of
+	// getLongCount(size) longs, in a single pass and returns the number of bits left set
+	public static int intersect(WordBitmap[] operands, int operandCount, long[] result) {
+		
+		int driver = -1;
+		int denseCount = 0;
+		
+		for(int i = 0; i < operandCount; ++i) {
+			
+			if(operands[i] instanceof DenseWordBitmap) ++denseCount;
+			else if(driver < 0 || operands[i].cardinality() < operands[driver].cardinality()) driver = i;
+			
+		}
+		
+		// Walk the set bits of the sparsest compact operand and probe the others
+		if(driver >= 0 && operands[driver].cardinality() <= result.length * 4) {
+			
+			WordBitmap bits = operands[driver];
+			int count = 0;
+			
+			nextBit:
+			for(int bit = bits.nextSetBit(0); bit >= 0; bit = bits.nextSetBit(bit + 1)) {
+				
+				for(int i = 0; i < operandCount; ++i)
+					if(i != driver && !operands[i].get(bit)) continue nextBit;
+				
+				result[bit >>> 6] |= 1L << bit;
+				++count;
+				
+			}
+			
+			return count;
+			
+		}
+		
+		long[][] dense = new long[denseCount][];
+		denseCount = 0;
+		
+		for(int i = 0; i < operandCount; ++i)
+			if(operands[i] instanceof DenseWordBitmap) dense[denseCount++] = ((DenseWordBitmap) operands[i]).words;
+		
+		if(denseCount == 0) {
+			
+			operands[0].copyInto(result);
+			dense = new long[][] { result };
+			
+		}
+		
+		boolean compact = denseCount < operandCount;
+		long[] last = (dense.length > 1) ? dense[dense.length - 1] : dense[0];
+		int count = 0;
+		
+		// Work through cache-sized blocks so every operand is streamed from memory only once,
+		// counting bits as the last operand is applied
+		for(int from = 0; from < result.length; from += INTERSECT_BLOCK) {
+			
+			int to = Math.min(from + INTERSECT_BLOCK, result.length);
+			long[] partial = dense[0];
+			
+			for(int k = 1; k < dense.length - 1; ++k) {
+				
+				long[] operand = dense[k];
+				
+				for(int i = from; i < to; ++i)
+					result[i] = partial[i] & operand[i];
+				
+				partial = result;
+				
+			}
+			
+			if(compact) {
+				
+				for(int i = from; i < to; ++i)
+					result[i] = partial[i] & last[i];
+				
+			} else {
+				
+				for(int i = from; i < to; ++i) {
+					
+					long word = partial[i] & last[i];
+					
+					result[i] = word;
+					count += Long.bitCount(word);
+					
+				}
+				
+			}
+			
+		}
+		
+		if(!compact) return count;
+		
+		for(int i = 0; i < operandCount; ++i)
+			if(!(operands[i] instanceof DenseWordBitmap)) operands[i].andInto(result);
+		
+		for(long word : result)
+			count += Long.bitCount(word);
+		
+		return count;
+		
+	}
+	
+	public abstract int size();
+	public abstract int cardinality();
+	public abstract boolean get(int index);
+	public abstract int nextSetBit(int fromIndex);
+	
+	// Arrays of another length are treated as if they were padded or truncated with zeros
+	public abstract void andInto(long[] words);
+	public abstract void orInto(long[] words);
+	public abstract void copyInto(long[] words);
+	
+	public abstract long getSizeInBytes();
+	
+}
@@ -1,9 +1,23 @@
 package com.daretodebug.xwords;
 
+import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 public final class WordDictionary {
 	
+	// Word ranges handed to a single build task; a multiple of 64 so that no two tasks share a bitmap long
+	private static final int BUILD_RANGE = 1 << 14;
+	
+	// Letter thresholds and histograms are built for each mask a search asks about, so they are
+	// weighed by size and the least recently used dropped past these limits
+	private static final long THRESHOLD_WEIGHT_LIMIT = 32L << 20;
+	private static final long HISTOGRAM_WEIGHT_LIMIT = 8L << 20;
+	
+	static final int ALL_LETTERS = (1 << 26) - 1;
+	static final long HISTOGRAM_GUARDS = 0x8888888888888888L;
+	static final long HISTOGRAM_OVERFLOW = -1L;
+	
 	private static final Comparator<String> WORD_COMPARATOR = new Comparator<String>() {
 		
 		@Override
@@ -86,15 +100,51 @@ public final class WordDictionary {
     }
 	
 	private int wordCount;
-	private final String[][] words;
-	private final List<String>[] readonlyWords;
-	private final LetterMap<BitSet[]>[] characterPositions;
+	private final Table[] tables;
 	private final Selection[] emptySelections;
+	private final DictionaryIndex index;
+	private volatile DoableWordEngine doableWordEngine = DoableWordEngine.THRESHOLD_BITMAPS;
+	
+	private final MaskCache<WordBitmap[][]> letterThresholds = new MaskCache<WordBitmap[][]>(THRESHOLD_WEIGHT_LIMIT) {
+		
+		@Override
+		protected long getWeight(WordBitmap[][] thresholds) {
+			
+			long weight = 16L * thresholds.length;
+			
+			for(WordBitmap[] letter : thresholds) {
+				
+				weight += 16L + 8L * letter.length;
+				
+				for(WordBitmap bitmap : letter)
+					weight += bitmap.getSizeInBytes();
+				
+			}
+			
+			return weight;
+			
+		}
+		
+	};
+	
+	private final MaskCache<long[]> letterHistograms = new MaskCache<long[]>(HISTOGRAM_WEIGHT_LIMIT) {
+		
+		@Override
+		protected long getWeight(long[] histograms) {
+			return 16L + 8L * histograms.length;
+		}
+		
+	};
 	
-	@SuppressWarnings("unchecked")
 	public WordDictionary(Iterator<String> wordIterator) {
+		this(wordIterator, null);
+	}
+	
+	// Builds the tables on the given pool, or on the calling thread if there is none
+	public WordDictionary(Iterator<String> wordIterator, ForkJoinPool pool) {
 		
-		TreeSet<String> wordSet = new TreeSet<String>(WORD_COMPARATOR);
+		// Words are bucketed by length as they stream in and sorted once at the end
+		ArrayList<WordBucket> buckets = new ArrayList<WordBucket>();
 		int longestWordLength = 0;
 		
 		while(wordIterator.hasNext()) {
@@ -107,66 +157,641 @@ public final class WordDictionary {
 			// Ignore any word shorter than two characters
 			if(word.length() < 2) continue;
 			
-			wordSet.add(word);
+			while(buckets.size() <= word.length()) buckets.add(new WordBucket(buckets.size()));
+			buckets.get(word.length()).add(word);
+			
 			longestWordLength = Math.max(longestWordLength, word.length());
 			
 		}
 		
-		wordCount = wordSet.size();
-		if(wordCount < 1) throw new IllegalArgumentException("No valid words were contained in the given iterable.");
-		
-		char[] as = new char[longestWordLength + 1];
-		Arrays.fill(as, 'A');
+		if(longestWordLength < 2) throw new IllegalArgumentException("No valid words were contained in the given iterable.");
 		
 		// Populate words arrays and tables
-		words = new String[longestWordLength - 1][];
-		characterPositions = (LetterMap<BitSet[]>[]) new LetterMap[words.length];
-		emptySelections = new Selection[words.length];
-		readonlyWords = new List[words.length];
+		tables = new Table[longestWordLength - 1];
+		emptySelections = new Selection[tables.length];
+		index = null;
+		
+		for(int i = 0; i < tables.length; ++i)
+			emptySelections[i] = new Selection(i, new DenseWordBitmap(0), true);
 		
-		for(int i = 0; i < words.length; ++i) {
+		if(pool == null) {
 			
-			int wordLength = i + 2;
+			for(int i = 0; i < tables.length; ++i) {
+				
+				String[] wordList = buckets.get(i + 2).toSortedWords();
+				tables[i] = new Table(wordList, buildPositionTable(wordList, i + 2));
+				
+			}
 			
-			String start = new String(as, 0, wordLength);
-			String end = new String(as, 0, wordLength + 1);
+		} else {
 			
-			SortedSet<String> wordsOfLength = wordSet.subSet(start, end);
-			String[] wordList = wordsOfLength.toArray(new String[wordsOfLength.size()]);
-			words[i] = wordList;
-			readonlyWords[i] = Collections.unmodifiableList(Arrays.asList(wordList));
+			ArrayList<TableTask> tasks = new ArrayList<TableTask>(tables.length);
 			
-			emptySelections[i] = new Selection(i, new BitSet(0), true);
+			for(int i = 0; i < tables.length; ++i)
+				tasks.add(new TableTask(buckets.get(i + 2)));
 			
-			LetterMap<BitSet[]> chPos = new LetterMap<BitSet[]>(); 
-			characterPositions[i] = chPos;
+			pool.invoke(new BuildTask(tasks));
 			
-			for(char ch = 'A'; ch <= 'Z'; ++ch) {
+			for(int i = 0; i < tables.length; ++i)
+				tables[i] = tasks.get(i).table;
+			
+		}
+		
+		for(Table table : tables)
+			wordCount += table.words.length;
+		
+	}
+	
+	private WordDictionary(DictionaryIndex index) {
+		
+		this.index = index;
+		
+		wordCount = index.getWordCount();
+		tables = new Table[index.getTableCount()];
+		emptySelections = new Selection[tables.length];
+		
+		for(int i = 0; i < tables.length; ++i)
+			emptySelections[i] = new Selection(i, new DenseWordBitmap(0), true);
+		
+	}
+	
+	private static LetterMap<WordBitmap[]> buildPositionTable(String[] wordList, int wordLength) {
+		
+		long[][] bits = allocatePositionBits(wordList.length, wordLength);
+		fillPositionBits(wordList, wordLength, bits, 0, wordList.length);
+		
+		LetterMap<WordBitmap[]> chPos = new LetterMap<WordBitmap[]>();
+		
+		for(char ch = 'A'; ch <= 'Z'; ++ch)
+			chPos.put(ch, toPositionBitmaps(bits, wordList.length, wordLength, ch));
+		
+		return chPos;
+		
+	}
+	
+	private static long[][] allocatePositionBits(int wordCount, int wordLength) {
+		
+		int longCount = WordBitmap.getLongCount(wordCount);
+		long[][] bits = new long[26 * wordLength][];
+		
+		for(int i = 0; i < bits.length; ++i)
+			bits[i] = new long[longCount];
+		
+		return bits;
+		
+	}
+	
+	private static void fillPositionBits(String[] wordList, int wordLength, long[][] bits, int from, int to) {
+		
+		for(int wordIndex = from; wordIndex < to; ++wordIndex) {
+			
+			String word = wordList[wordIndex];
+			
+			for(int letterIndex = 0; letterIndex < wordLength; ++letterIndex) {
 				
-				BitSet[] pos = new BitSet[wordLength];
+				char letter = word.charAt(letterIndex);
+				bits[(letter - 'A') * wordLength + letterIndex][wordIndex >>> 6] |= 1L << wordIndex;
 				
-				for(int j = 0; j < pos.length; ++j)
-					pos[j] = new BitSet(words.length);
+			}
+			
+		}
+		
+	}
+		
+	private static WordBitmap[] toPositionBitmaps(long[][] bits, int wordCount, int wordLength, char letter) {
+			
+		WordBitmap[] pos = new WordBitmap[wordLength];
+			
+		for(int j = 0; j < pos.length; ++j)
+			pos[j] = WordBitmap.of(bits[(letter - 'A') * wordLength + j], wordCount);
+			
+		return pos;
+		
+	}
+	
+	// Sorts rows of letter codes (0 to 25) with an LSD radix sort and returns the offsets of
+	// the rows in order
+	static int[] sortRows(byte[] letters, int count, int rowLength) {
+		
+		int[] order = new int[count];
+		int[] scratch = new int[count];
+		int[] starts = new int[27];
+		
+		for(int i = 0; i < count; ++i)
+			order[i] = i * rowLength;
+		
+		for(int position = rowLength - 1; position >= 0; --position) {
+			
+			Arrays.fill(starts, 0);
+			
+			for(int i = 0; i < count; ++i)
+				++starts[letters[order[i] + position] + 1];
+			
+			for(int i = 1; i < starts.length; ++i)
+				starts[i] += starts[i - 1];
+			
+			for(int i = 0; i < count; ++i)
+				scratch[starts[letters[order[i] + position]]++] = order[i];
+			
+			int[] swap = order;
+			order = scratch;
+			scratch = swap;
+			
+		}
+		
+		return order;
+		
+	}
+	
+	// Holds the words of one length as packed rows of letter codes
+	private static final class WordBucket {
+		
+		private final int wordLength;
+		private byte[] letters;
+		private int count;
+		
+		public WordBucket(int wordLength) {
+			
+			this.wordLength = wordLength;
+			this.letters = new byte[wordLength * 16];
+			
+		}
+		
+		public void add(String word) {
+			
+			if((count + 1) * wordLength > letters.length)
+				letters = Arrays.copyOf(letters, letters.length * 2);
+			
+			int offset = count * wordLength;
+			
+			for(int i = 0; i < wordLength; ++i)
+				letters[offset + i] = (byte) (word.charAt(i) - 'A');
+			
+			++count;
+			
+		}
+		
+		// Sorts the rows and drops duplicates
+		public String[] toSortedWords() {
+			
+			int[] order = sortRows(letters, count, wordLength);
+			
+			char[] word = new char[wordLength];
+			ArrayList<String> words = new ArrayList<String>(count);
+			int previous = -1;
+			
+			for(int i = 0; i < count; ++i) {
 				
-				chPos.put(ch, pos);
+				int offset = order[i];
+				if(previous >= 0 && equalRows(previous, offset)) continue;
+				
+				for(int j = 0; j < wordLength; ++j)
+					word[j] = (char) ('A' + letters[offset + j]);
+				
+				words.add(new String(word));
+				previous = offset;
 				
 			}
 			
-			for(int wordIndex = 0; wordIndex < wordList.length; ++wordIndex) {
+			letters = null;
+			return words.toArray(new String[words.size()]);
+			
+		}
+		
+		private boolean equalRows(int a, int b) {
+			
+			for(int i = 0; i < wordLength; ++i)
+				if(letters[a + i] != letters[b + i]) return false;
+			
+			return true;
+			
+		}
+		
+	}
+	
+	private static final class BuildTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final List<TableTask> tasks;
+		
+		public BuildTask(List<TableTask> tasks) {
+			this.tasks = tasks;
+		}
+		
+		@Override
+		protected void compute() {
+			invokeAll(tasks);
+		}
+		
+	}
+	
+	private static final class TableTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final WordBucket bucket;
+		private Table table;
+		
+		public TableTask(WordBucket bucket) {
+			this.bucket = bucket;
+		}
+		
+		@Override
+		protected void compute() {
+			
+			String[] wordList = bucket.toSortedWords();
+			int wordLength = bucket.wordLength;
+			
+			long[][] bits = allocatePositionBits(wordList.length, wordLength);
+			
+			// Long tables (in practice 7 to 9 letters) are split into word ranges that each
+			// write their own bitmap longs, so no locking is needed to merge them
+			ArrayList<RecursiveAction> fills = new ArrayList<RecursiveAction>();
+			
+			for(int from = 0; from < wordList.length; from += BUILD_RANGE)
+				fills.add(new FillTask(wordList, wordLength, bits, from, Math.min(from + BUILD_RANGE, wordList.length)));
+			
+			invokeAll(fills);
+			
+			ArrayList<LetterTask> letters = new ArrayList<LetterTask>(26);
+			
+			for(char ch = 'A'; ch <= 'Z'; ++ch)
+				letters.add(new LetterTask(bits, wordList.length, wordLength, ch));
+			
+			if(wordList.length > BUILD_RANGE) invokeAll(letters);
+			else for(LetterTask letter : letters) letter.compute();
+			
+			LetterMap<WordBitmap[]> chPos = new LetterMap<WordBitmap[]>();
+			
+			for(LetterTask letter : letters)
+				chPos.put(letter.letter, letter.bitmaps);
+			
+			table = new Table(wordList, chPos);
+			
+		}
+		
+	}
+	
+	private static final class FillTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final String[] wordList;
+		private final int wordLength;
+		private final long[][] bits;
+		private final int from;
+		private final int to;
+		
+		public FillTask(String[] wordList, int wordLength, long[][] bits, int from, int to) {
+			
+			this.wordList = wordList;
+			this.wordLength = wordLength;
+			this.bits = bits;
+			this.from = from;
+			this.to = to;
+			
+		}
+		
+		@Override
+		protected void compute() {
+			fillPositionBits(wordList, wordLength, bits, from, to);
+		}
+		
+	}
+	
+	private static final class LetterTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final long[][] bits;
+		private final int wordCount;
+		private final int wordLength;
+		private final char letter;
+		private WordBitmap[] bitmaps;
+		
+		public LetterTask(long[][] bits, int wordCount, int wordLength, char letter) {
+			
+			this.bits = bits;
+			this.wordCount = wordCount;
+			this.wordLength = wordLength;
+			this.letter = letter;
+			
+		}
+		
+		@Override
+		protected void compute() {
+			bitmaps = toPositionBitmaps(bits, wordCount, wordLength, letter);
+		}
+		
+	}
+	
+	// Bitmaps [letter][k - 1] of the words that need at least k copies of a letter to fill
+	// the spaces left open by the given mask
+	private static WordBitmap[][] buildLetterThresholds(String[] wordList, boolean[] mask) {
+		
+		int longCount = WordBitmap.getLongCount(wordList.length);
+		long[][][] bits = new long[26][0][];
+		int[] counts = new int[26];
+		
+		for(int wordIndex = 0; wordIndex < wordList.length; ++wordIndex) {
+			
+			String word = wordList[wordIndex];
+			
+			for(int i = 0; i < mask.length; ++i) {
+				
+				if(mask[i]) continue;
 				
-				String word = wordList[wordIndex];
+				int letter = word.charAt(i) - 'A';
+				int k = counts[letter]++;
 				
-				for(int letterIndex = 0; letterIndex < word.length(); ++letterIndex) {
+				if(k == bits[letter].length) {
 					
-					char letter = word.charAt(letterIndex);
-					chPos.get(letter)[letterIndex].set(wordIndex);
+					bits[letter] = Arrays.copyOf(bits[letter], k + 1);
+					bits[letter][k] = new long[longCount];
 					
 				}
 				
+				bits[letter][k][wordIndex >>> 6] |= 1L << wordIndex;
+				
+			}
+			
+			for(int i = 0; i < mask.length; ++i)
+				if(!mask[i]) counts[word.charAt(i) - 'A'] = 0;
+			
+		}
+		
+		WordBitmap[][] thresholds = new WordBitmap[26][];
+		
+		for(int letter = 0; letter < 26; ++letter) {
+			
+			thresholds[letter] = new WordBitmap[bits[letter].length];
+			
+			for(int k = 0; k < thresholds[letter].length; ++k)
+				thresholds[letter][k] = WordBitmap.of(bits[letter][k], wordList.length);
+			
+		}
+		
+		return thresholds;
+		
+	}
+	
+	// Two longs per word counting the letters that fill the spaces left open by the given
+	// mask, four bits per letter: A to P in the first long and Q to Z in the second. Counts
+	// stay below eight so that the top bit of each field is free to catch borrows, and a
+	// word with more than seven of any letter is marked with HISTOGRAM_OVERFLOW instead
+	private static long[] buildLetterHistograms(String[] wordList, boolean[] mask) {
+		
+		long[] histograms = new long[wordList.length * 2];
+		
+		for(int wordIndex = 0; wordIndex < wordList.length; ++wordIndex) {
+			
+			String word = wordList[wordIndex];
+			long low = 0;
+			long high = 0;
+			
+			for(int i = 0; i < mask.length; ++i) {
+				
+				if(mask[i]) continue;
+				
+				int letter = word.charAt(i) - 'A';
+				
+				if(letter < 16) low += 1L << (letter << 2);
+				else high += 1L << ((letter - 16) << 2);
+				
+			}
+			
+			if(((low | high) & HISTOGRAM_GUARDS) != 0) {
+				
+				low = HISTOGRAM_OVERFLOW;
+				high = HISTOGRAM_OVERFLOW;
+				
+			}
+			
+			histograms[wordIndex * 2] = low;
+			histograms[wordIndex * 2 + 1] = high;
+			
+		}
+		
+		return histograms;
+		
+	}
+	
+	public static WordDictionary open(File file) throws IOException {
+		return new WordDictionary(DictionaryIndex.open(file));
+	}
+	
+	// Fails if the index wasn't written from the word list as it is now
+	public static WordDictionary open(File file, File wordList) throws IOException {
+		
+		DictionaryIndex index = DictionaryIndex.open(file);
+		if(!index.isIndexOf(wordList)) throw new IOException("Dictionary index is out of date.");
+		
+		return new WordDictionary(index);
+		
+	}
+	
+	public void save(File file) throws IOException {
+		DictionaryIndex.write(this, file, null);
+	}
+	
+	public void save(File file, File wordList) throws IOException {
+		DictionaryIndex.write(this, file, wordList);
+	}
+	
+	private Table getTable(int tableIndex) {
+		
+		Table table = tables[tableIndex];
+		if(table == null) table = loadTable(tableIndex);
+		
+		return table;
+		
+	}
+	
+	// Index-backed tables are only read, and their checksums checked, the first time they are
+	// used.  A damaged table is reported then as an UncheckedIOException.
+	private synchronized Table loadTable(int tableIndex) {
+		
+		Table table = tables[tableIndex];
+		if(table != null) return table;
+		
+		int wordLength = tableIndexToWordLength(tableIndex);
+		
+		try {
+			
+			String[] wordList = index.readWords(tableIndex);
+			
+			LetterMap<WordBitmap[]> chPos = new LetterMap<WordBitmap[]>();
+			
+			for(char ch = 'A'; ch <= 'Z'; ++ch) {
+				
+				WordBitmap[] pos = new WordBitmap[wordLength];
+				
+				for(int j = 0; j < pos.length; ++j)
+					pos[j] = index.readPositions(tableIndex, ch, j);
+				
+				chPos.put(ch, pos);
+				
 			}
 			
+			table = new Table(wordList, chPos);
+			
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
 		}
 		
+		tables[tableIndex] = table;
+		
+		return table;
+		
+	}
+	
+	int getTableCount() {
+		return tables.length;
+	}
+	
+	int getWordCount() {
+		return wordCount;
+	}
+	
+	String[] getWordTable(int tableIndex) {
+		return getTable(tableIndex).words;
+	}
+	
+	// Words are numbered by their index among the words of their length
+	String getWord(int wordLength, int wordId) {
+		return getWordTable(wordLengthToTableIndex(wordLength))[wordId];
+	}
+	
+	// Returns -1 if the word isn't in the dictionary
+	int getWordId(char[] word) {
+		
+		int tableIndex = wordLengthToTableIndex(word.length);
+		if(tableIndex < 0 || tableIndex >= tables.length) return -1;
+		
+		int index = binarySearch(getWordTable(tableIndex), word);
+		return (index >= 0) ? index : -1;
+		
+	}
+	
+	WordBitmap getPositionTable(int tableIndex, char letter, int position) {
+		return getTable(tableIndex).characterPositions.get(letter)[position];
+	}
+	
+	// Returns null if the mask is too long to be cached or there are no words of its length
+	WordBitmap[][] getLetterThresholds(boolean[] mask) {
+		
+		int tableIndex = wordLengthToTableIndex(mask.length);
+		if(tableIndex < 0 || tableIndex >= tables.length || mask.length > 64) return null;
+		
+		MaskKey key = new MaskKey(tableIndex, getMaskKey(mask));
+		WordBitmap[][] thresholds = letterThresholds.get(key);
+		
+		if(thresholds == null) thresholds = letterThresholds.put(key, buildLetterThresholds(getTable(tableIndex).words, mask));
+		return thresholds;
+		
+	}
+	
+	// Returns null if the mask is too long to be cached or there are no words of its length
+	long[] getLetterHistograms(boolean[] mask) {
+		
+		int tableIndex = wordLengthToTableIndex(mask.length);
+		if(tableIndex < 0 || tableIndex >= tables.length || mask.length > 64) return null;
+		
+		MaskKey key = new MaskKey(tableIndex, getMaskKey(mask));
+		long[] histograms = letterHistograms.get(key);
+		
+		if(histograms == null) histograms = letterHistograms.put(key, buildLetterHistograms(getTable(tableIndex).words, mask));
+		return histograms;
+		
+	}
+	
+	private static long getMaskKey(boolean[] mask) {
+		
+		long key = 0;
+		
+		for(int i = 0; i < mask.length; ++i)
+			if(!mask[i]) key |= 1L << i;
+		
+		return key;
+		
+	}
+	
+	private AnagramIndex getAnagramIndex(int tableIndex) {
+		
+		Table table = getTable(tableIndex);
+		AnagramIndex anagrams = table.anagrams;
+		
+		if(anagrams == null) synchronized(table) {
+			
+			anagrams = table.anagrams;
+			
+			if(anagrams == null) {
+				
+				anagrams = new AnagramIndex(table.words, tableIndexToWordLength(tableIndex));
+				table.anagrams = anagrams;
+				
+			}
+			
+		}
+		
+		return anagrams;
+		
+	}
+	
+	// Selects every word of the given length that can be spelled using only tiles from the hand
+	public Selection selectAnagrams(Hand hand, int wordLength) {
+		
+		int tableIndex = wordLengthToTableIndex(wordLength);
+		
+		if(tableIndex < 0 || tableIndex >= tables.length) return new Selection(tableIndex, new DenseWordBitmap(0), false);
+		
+		long[] words = new long[WordBitmap.getLongCount(getWordTable(tableIndex).length)];
+		
+		if(hand.getTileCount() >= wordLength) {
+			
+			int[] letterCounts = new int[26];
+			
+			for(char ch = 'A'; ch <= 'Z'; ++ch)
+				letterCounts[ch - 'A'] = hand.getLetterCount(ch);
+			
+			getAnagramIndex(tableIndex).findAnagrams(letterCounts, hand.getBlankCount(), words);
+			
+		}
+		
+		return select(wordLength, words);
+		
+	}
+	
+	public List<String> getAnagrams(Hand hand, int wordLength) {
+		
+		ArrayList<String> anagrams = new ArrayList<String>();
+		
+		for(String word : selectAnagrams(hand, wordLength))
+			anagrams.add(word);
+		
+		return anagrams;
+		
+	}
+	
+	Selection select(int wordLength, long[] words) {
+		
+		int tableIndex = wordLengthToTableIndex(wordLength);
+		int wordCount = getWordTable(tableIndex).length;
+		
+		return new Selection(tableIndex, new DenseWordBitmap(words, wordCount), false);
+		
+	}
+	
+	public DoableWordEngine getDoableWordEngine() {
+		return doableWordEngine;
+	}
+	
+	public void setDoableWordEngine(DoableWordEngine doableWordEngine) {
+		
+		if(doableWordEngine == null) throw new NullPointerException();
+		this.doableWordEngine = doableWordEngine;
+		
 	}
 	
 	private static int wordLengthToTableIndex(int wordLength) {
@@ -181,8 +806,8 @@ public final class WordDictionary {
 		
 		int tableIndex = wordLengthToTableIndex(wordLength);
 		
-		if(tableIndex < 0 || tableIndex >= readonlyWords.length) return Collections.emptyList();
-		return readonlyWords[tableIndex];
+		if(tableIndex < 0 || tableIndex >= tables.length) return Collections.emptyList();
+		return getTable(tableIndex).readonlyWords;
 		
 	}
 	
@@ -191,9 +816,20 @@ public final class WordDictionary {
 		if(word == null) return false;
 		int tableIndex = wordLengthToTableIndex(word.length());
 		
-		if(tableIndex < 0 || tableIndex >= words.length) return false;
+		if(tableIndex < 0 || tableIndex >= tables.length) return false;
+		
+		return Arrays.binarySearch(getWordTable(tableIndex), word, WORD_COMPARATOR) >= 0;
+		
+	}
+	
+	public boolean containsWord(char[] word) {
 		
-		return Arrays.binarySearch(words[tableIndex], word, WORD_COMPARATOR) >= 0;
+		if(word == null) return false;
+		int tableIndex = wordLengthToTableIndex(word.length);
+		
+		if(tableIndex < 0 || tableIndex >= tables.length) return false;
+		
+		return binarySearch(getWordTable(tableIndex), word) >= 0;
 		
 	}
 	
@@ -202,9 +838,9 @@ public final class WordDictionary {
 		if(word == null) return word;
 		int tableIndex = wordLengthToTableIndex(word.length());
 		
-		if(tableIndex < 0 || tableIndex >= words.length) return word;
+		if(tableIndex < 0 || tableIndex >= tables.length) return word;
 		
-		String[] table = words[tableIndex];
+		String[] table = getWordTable(tableIndex);
 		int index = Arrays.binarySearch(table, word, WORD_COMPARATOR);
 		
 		return (index >= 0) ? table[index] : word;
@@ -216,9 +852,9 @@ public final class WordDictionary {
 		if(word == null) return new String(word);
 		int tableIndex = wordLengthToTableIndex(word.length);
 		
-		if(tableIndex < 0 || tableIndex >= words.length) return new String(word);
+		if(tableIndex < 0 || tableIndex >= tables.length) return new String(word);
 		
-		String[] table = words[tableIndex];
+		String[] table = getWordTable(tableIndex);
 		int index = binarySearch(table, word);
 		
 		return (index >= 0) ? table[index] : new String(word);
@@ -229,16 +865,109 @@ public final class WordDictionary {
 		
 		int tableIndex = wordLengthToTableIndex(wordLength);
 		
-		if(tableIndex < 0 || tableIndex >= emptySelections.length) return new Selection(tableIndex, new BitSet(0), false);
+		if(tableIndex < 0 || tableIndex >= emptySelections.length) return new Selection(tableIndex, new DenseWordBitmap(0), false);
 		return emptySelections[tableIndex];
 		
 	}
 	
+	private static final class Table {
+		
+		public final String[] words;
+		public final List<String> readonlyWords;
+		public final LetterMap<WordBitmap[]> characterPositions;
+		public volatile AnagramIndex anagrams;
+		
+		public Table(String[] words, LetterMap<WordBitmap[]> characterPositions) {
+			
+			this.words = words;
+			this.readonlyWords = Collections.unmodifiableList(Arrays.asList(words));
+			this.characterPositions = characterPositions;
+			
+		}
+		
+	}
+	
+	private static abstract class MaskCache<V> {
+		
+		private final long weightLimit;
+		private final LinkedHashMap<MaskKey, V> entries = new LinkedHashMap<MaskKey, V>(16, 0.75f, true);
+		private long weight;
+		
+		public MaskCache(long weightLimit) {
+			this.weightLimit = weightLimit;
+		}
+		
+		public synchronized V get(MaskKey key) {
+			return entries.get(key);
+		}
+		
+		// Returns the value already cached if another thread built one first
+		public synchronized V put(MaskKey key, V value) {
+			
+			V cached = entries.get(key);
+			if(cached != null) return cached;
+			
+			long valueWeight = getWeight(value);
+			if(valueWeight > weightLimit) return value;
+			
+			entries.put(key, value);
+			weight += valueWeight;
+			
+			// Least recently used first
+			Iterator<V> iterator = entries.values().iterator();
+			
+			while(weight > weightLimit) {
+				
+				weight -= getWeight(iterator.next());
+				iterator.remove();
+				
+			}
+			
+			return value;
+			
+		}
+		
+		protected abstract long getWeight(V value);
+		
+	}
+	
+	private static final class MaskKey {
+		
+		private final int tableIndex;
+		private final long mask;
+		
+		public MaskKey(int tableIndex, long mask) {
+			
+			this.tableIndex = tableIndex;
+			this.mask = mask;
+			
+		}
+		
+		@Override
+		public int hashCode() {
+			return tableIndex * 31 + Long.hashCode(mask);
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			
+			if(o == this) return true;
+			if(!(o instanceof MaskKey)) return false;
+			
+			MaskKey k = (MaskKey) o;
+			
+			return tableIndex == k.tableIndex && mask == k.mask;
+			
+		}
+		
+	}
+	
 	public final class Selection implements Iterable<String> {
 		
 		private int tableIndex;
-		private BitSet selection; // null means all words fit
+		private WordBitmap selection; // null means all words fit
 		private boolean readonly;
+		private int size = -1;
 		
 		public Selection(int wordLength) {
 			
@@ -247,8 +976,8 @@ public final class WordDictionary {
 			
 			readonly = false;
 			
-			if(tableIndex < 0 || tableIndex >= characterPositions.length)
-				selection = new BitSet(0);
+			if(tableIndex < 0 || tableIndex >= tables.length)
+				selection = new DenseWordBitmap(0);
 				
 			else selection = null;
 			
@@ -261,20 +990,10 @@ public final class WordDictionary {
 			
 			readonly = false;
 			
-			if(tableIndex < 0 || tableIndex >= characterPositions.length)
-				selection = new BitSet(0);
+			if(tableIndex < 0 || tableIndex >= tables.length)
+				selection = new DenseWordBitmap(0);
 			
-			else {
-				
-				selection = (BitSet) selectedWords.clone();
-				
-				int wordCount = words[tableIndex].length;
-				int selectionCount = selectedWords.length();
-				
-				if(selectionCount > wordCount)
-					selection.clear(wordCount, selectionCount);
-				
-			}
+			else selection = new DenseWordBitmap(selectedWords, getWordTable(tableIndex).length);
 			
 		}
 		
@@ -288,21 +1007,21 @@ public final class WordDictionary {
 			if(position < 0 || position >= getWordsLength())
 				throw new IndexOutOfBoundsException();
 			
-			if(tableIndex < 0 || tableIndex >= characterPositions.length) {
+			if(tableIndex < 0 || tableIndex >= tables.length) {
 				
-				selection = new BitSet(0);
+				selection = new DenseWordBitmap(0);
 				readonly = false;
 				
 			} else {
 				
-				selection = characterPositions[tableIndex].get(letter)[position];
+				selection = getPositionTable(tableIndex, letter, position);
 				readonly = true;
 				
 			}
 			
 		}
 		
-		private Selection(int tableIndex, BitSet selection, boolean readonly) {
+		private Selection(int tableIndex, WordBitmap selection, boolean readonly) {
 			
 			this.tableIndex = tableIndex;
 			this.selection = selection;
@@ -310,18 +1029,63 @@ public final class WordDictionary {
 			
 		}
 		
+		private Selection(int tableIndex, WordBitmap selection, int size) {
+			
+			this.tableIndex = tableIndex;
+			this.selection = selection;
+			this.readonly = false;
+			this.size = size;
+			
+		}
+		
 		private Selection(Selection selection) {
 			
-			this.selection = (selection.selection == null) ? null : (BitSet) selection.selection.clone();
+			this.selection = (selection.selection == null) ? null : new DenseWordBitmap(selection.selection);
 			this.tableIndex = selection.tableIndex;
 			this.readonly = false;
 			
 		}
 		
+		// Memory held by the selection's bitmap; selections of every word hold none
+		long getSizeInBytes() {
+			return (selection == null) ? 0 : selection.getSizeInBytes();
+		}
+		
+		// The first selected word at or after the given one, or -1 if there are no more
+		int nextWordId(int fromIndex) {
+			
+			if(selection != null) return selection.nextSetBit(fromIndex);
+			return (fromIndex < getWordTable(tableIndex).length) ? fromIndex : -1;
+			
+		}
+		
+		// The first word at or after the given one selected by both this and the other selection,
+		// found without making their intersection
+		int nextWordId(Selection other, int fromIndex) {
+			
+			for(;;) {
+				
+				fromIndex = nextWordId(fromIndex);
+				if(fromIndex < 0) return -1;
+				
+				int otherIndex = other.nextWordId(fromIndex);
+				if(otherIndex == fromIndex || otherIndex < 0) return otherIndex;
+				
+				fromIndex = otherIndex;
+				
+			}
+			
+		}
+		
 		public void freeze() {
 			readonly = true;
 		}
 		
+		// Writable selections always hold their own dense bitmap
+		private long[] getWritableWords() {
+			return ((DenseWordBitmap) selection).words;
+		}
+		
 		public Selection and(char letter, int position) {
 			
 			if(letter < 'A' || letter > 'Z') throw new IllegalArgumentException();
@@ -329,10 +1093,10 @@ public final class WordDictionary {
 			if(position < 0 || position >= getWordsLength())
 				throw new IndexOutOfBoundsException();
 			
-			if(tableIndex < 0 || tableIndex >= characterPositions.length)
+			if(tableIndex < 0 || tableIndex >= tables.length)
 				return this;
 			
-			BitSet and = characterPositions[tableIndex].get(letter)[position];
+			WordBitmap and = getPositionTable(tableIndex, letter, position);
 			Selection writable;
 			
 			if(readonly) writable = new Selection(this);
@@ -343,8 +1107,9 @@ public final class WordDictionary {
 				writable.selection = and;
 				writable.readonly = true;
 				
-			} else writable.selection.and(and);
+			} else and.andInto(writable.getWritableWords());
 			
+			writable.size = -1;
 			return writable;
 			
 		}
@@ -359,15 +1124,18 @@ public final class WordDictionary {
 			if(this.tableIndex != other.tableIndex)
 				throw new IllegalArgumentException("The given selection's table index does not match this selection's table index.");
 			
-			BitSet and = other.selection;
+			WordBitmap and = other.selection;
+			if(and == null) return this;
+			
 			Selection writable;
 			
 			if(readonly) writable = new Selection(this);
 			else writable = this;
 			
-			if(writable.selection == null) writable.selection = (BitSet) and.clone();
-			else writable.selection.and(and);
+			if(writable.selection == null) writable.selection = new DenseWordBitmap(and);
+			else and.andInto(writable.getWritableWords());
 			
+			writable.size = -1;
 			return writable;
 			
 		}
@@ -379,23 +1147,109 @@ public final class WordDictionary {
 			if(position < 0 || position >= getWordsLength())
 				throw new IndexOutOfBoundsException();
 			
-			if(tableIndex < 0 || tableIndex >= characterPositions.length)
+			if(tableIndex < 0 || tableIndex >= tables.length)
 				return this;
 			
 			if(this.selection == null) return this;
 			
-			BitSet or = characterPositions[tableIndex].get(letter)[position];
+			WordBitmap or = getPositionTable(tableIndex, letter, position);
 			Selection writable;
 			
 			if(readonly) writable = new Selection(this);
 			else writable = this;
 			
-			writable.selection.or(or);
+			or.orInto(writable.getWritableWords());
 			
+			writable.size = -1;
 			return writable;
 			
 		}
 		
+		// Keeps the words with any of the given letters (bit 0 for A through bit 25 for Z) at
+		// the position, using one OR per letter
+		public Selection andAny(int letters, int position) {
+			
+			if((letters & ~ALL_LETTERS) != 0) throw new IllegalArgumentException();
+			
+			if(position < 0 || position >= getWordsLength())
+				throw new IndexOutOfBoundsException();
+			
+			if(tableIndex < 0 || tableIndex >= tables.length || letters == ALL_LETTERS)
+				return this;
+			
+			if(Integer.bitCount(letters) == 1)
+				return and((char) ('A' + Integer.numberOfTrailingZeros(letters)), position);
+			
+			int wordCount = getWordTable(tableIndex).length;
+			long[] words = new long[WordBitmap.getLongCount(wordCount)];
+			
+			for(int rest = letters; rest != 0; rest &= rest - 1)
+				getPositionTable(tableIndex, (char) ('A' + Integer.numberOfTrailingZeros(rest)), position).orInto(words);
+			
+			if(selection != null) selection.andInto(words);
+			
+			if(readonly) return new Selection(tableIndex, new DenseWordBitmap(words, wordCount), false);
+			
+			this.selection = new DenseWordBitmap(words, wordCount);
+			this.size = -1;
+			
+			return this;
+			
+		}
+		
+		// Intersects this selection with every given letter/position table in one pass
+		public Selection andAll(char[] letters, int[] positions) {
+			
+			if(letters.length != positions.length)
+				throw new IllegalArgumentException("There must be exactly one position for each letter.");
+			
+			for(int i = 0; i < letters.length; ++i) {
+				
+				if(letters[i] < 'A' || letters[i] > 'Z') throw new IllegalArgumentException();
+				
+				if(positions[i] < 0 || positions[i] >= getWordsLength())
+					throw new IndexOutOfBoundsException();
+				
+			}
+			
+			if(tableIndex < 0 || tableIndex >= tables.length || letters.length == 0)
+				return this;
+			
+			// Nothing can be removed from an empty selection
+			if(selection != null && selection.size() == 0)
+				return this;
+			
+			if(selection == null && letters.length == 1)
+				return and(letters[0], positions[0]);
+			
+			WordBitmap[] operands = new WordBitmap[letters.length + 1];
+			int operandCount = 0;
+			
+			if(selection != null) operands[operandCount++] = selection;
+			
+			for(int i = 0; i < letters.length; ++i)
+				operands[operandCount++] = getPositionTable(tableIndex, letters[i], positions[i]);
+			
+			int wordCount = getWordTable(tableIndex).length;
+			long[] result = new long[WordBitmap.getLongCount(wordCount)];
+			int size = WordBitmap.intersect(operands, operandCount, result);
+			
+			if(readonly) return new Selection(tableIndex, new DenseWordBitmap(result, wordCount), size);
+			
+			this.selection = new DenseWordBitmap(result, wordCount);
+			this.size = size;
+			
+			return this;
+			
+		}
+		
+		public int size() {
+			
+			if(size < 0) size = (selection == null) ? getWordTable(tableIndex).length : selection.cardinality();
+			return size;
+			
+		}
+		
 		public int getWordsLength() {
 			return tableIndexToWordLength(tableIndex);
 		}
@@ -408,16 +1262,20 @@ public final class WordDictionary {
 		public java.util.Iterator<String> iterator() {
 			
 			if(selection != null) return new Iterator();
-			else return Arrays.asList(words[tableIndex]).iterator();
+			else return getTable(tableIndex).readonlyWords.iterator();
 			
 		}
 		
 		public final class Iterator implements java.util.Iterator<String> {
 			
+			private final String[] words;
 			private int nextIndex;
 			
 			public Iterator() {
+				
+				words = (selection.size() == 0) ? null : getWordTable(tableIndex);
 				nextIndex = selection.nextSetBit(0);
+				
 			}
 			
 			@Override
@@ -430,7 +1288,7 @@ public final class WordDictionary {
 				
 				if(!hasNext()) throw new NoSuchElementException();
 				
-				String word = words[tableIndex][nextIndex];
+				String word = words[nextIndex];
 				nextIndex = selection.nextSetBit(nextIndex + 1);
 				
 				return word;